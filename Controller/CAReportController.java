@@ -1,11 +1,8 @@
 package com.RK8.V2.Controller;
-import com.RK8.V2.DTO.Gstr2BDTO;
-import com.RK8.V2.DTO.PurchaseInvoiceDTO;
+import com.RK8.V2.DTO.CachedRun;
 import com.RK8.V2.DTO.ReconciliationResult;
-import com.RK8.V2.Parser.Gstr2BExcelParser;
-import com.RK8.V2.Parser.PurchaseExcelParser;
 import com.RK8.V2.Service.CAReportService;
-import com.RK8.V2.Service.Purchase2BReconciliationService;
+import com.RK8.V2.Service.ReconciliationRunRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.HttpHeaders;
@@ -14,7 +11,6 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.InputStream;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
@@ -24,39 +20,23 @@ import java.util.List;
 public class CAReportController {
 
     @Autowired
-    private PurchaseExcelParser purchaseParser;
-
-    @Autowired
-    private Gstr2BExcelParser gstr2BParser;
-
-    @Autowired
-    private Purchase2BReconciliationService reconciliationService;
+    private ReconciliationRunRegistry runRegistry;
 
     @Autowired
     private CAReportService caReportService;
 
     @PostMapping("/generate-report")
     public ResponseEntity<ByteArrayResource> generateCAReport(
-            @RequestParam("purchaseFile") MultipartFile purchaseFile,
-            @RequestParam("gstr2bFile") MultipartFile gstr2bFile) {
+            @RequestParam(value = "purchaseFile", required = false) MultipartFile purchaseFile,
+            @RequestParam(value = "gstr2bFile", required = false) MultipartFile gstr2bFile,
+            @RequestParam(value = "runId", required = false) String runId) {
 
         try {
-            // Parse files
-            List<PurchaseInvoiceDTO> purchases;
-            List<Gstr2BDTO> gstr2bList;
-
-            try (InputStream purchaseStream = purchaseFile.getInputStream();
-                 InputStream gstr2bStream = gstr2bFile.getInputStream()) {
-
-                purchases = purchaseParser.parse(purchaseStream);
-                gstr2bList = gstr2BParser.parse(gstr2bStream);
-            }
-
-            // Reconcile
-            List<ReconciliationResult> results = reconciliationService.reconcile(purchases, gstr2bList);
+            // Reconcile the files, or reuse an earlier run
+            CachedRun run = runRegistry.resolve(runId, purchaseFile, gstr2bFile, null);
 
             // Generate CA report
-            byte[] reportBytes = caReportService.generateCAReport(purchases, gstr2bList, results);
+            byte[] reportBytes = caReportService.generateCAReport(run.getPurchases(), run.getGstr2bList(), run.getResults());
 
             // Create filename with timestamp
             String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
@@ -67,10 +47,13 @@ public class CAReportController {
 
             return ResponseEntity.ok()
                     .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                    .header("X-Run-Id", run.getRunId())
                     .contentType(MediaType.APPLICATION_OCTET_STREAM)
                     .contentLength(reportBytes.length)
                     .body(resource);
 
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
@@ -78,26 +61,16 @@ public class CAReportController {
 
         @PostMapping("/download-report")
     public ResponseEntity<ByteArrayResource> downloadReport(
-            @RequestParam("purchaseFile") MultipartFile purchaseFile,
-            @RequestParam("gstr2bFile") MultipartFile gstr2bFile) {
+            @RequestParam(value = "purchaseFile", required = false) MultipartFile purchaseFile,
+            @RequestParam(value = "gstr2bFile", required = false) MultipartFile gstr2bFile,
+            @RequestParam(value = "runId", required = false) String runId) {
 
         try {
-            // Parse files
-            List<PurchaseInvoiceDTO> purchases;
-            List<Gstr2BDTO> gstr2bList;
-
-            try (InputStream purchaseStream = purchaseFile.getInputStream();
-                 InputStream gstr2bStream = gstr2bFile.getInputStream()) {
-
-                purchases = purchaseParser.parse(purchaseStream);
-                gstr2bList = gstr2BParser.parse(gstr2bStream);
-            }
-
-            // Reconcile
-            List<ReconciliationResult> results = reconciliationService.reconcile(purchases, gstr2bList);
+            // Reconcile the files, or reuse an earlier run
+            CachedRun run = runRegistry.resolve(runId, purchaseFile, gstr2bFile, null);
 
             // Generate CA report
-            byte[] reportBytes = caReportService.generateCAReport(purchases, gstr2bList, results);
+            byte[] reportBytes = caReportService.generateCAReport(run.getPurchases(), run.getGstr2bList(), run.getResults());
 
             // Create filename with timestamp
             String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
@@ -108,10 +81,13 @@ public class CAReportController {
 
             return ResponseEntity.ok()
                     .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                    .header("X-Run-Id", run.getRunId())
                     .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
                     .contentLength(reportBytes.length)
                     .body(resource);
 
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
@@ -120,26 +96,16 @@ public class CAReportController {
     // Simple version without CA report service (if you just want mismatches)
     @PostMapping("/download-mismatches")
     public ResponseEntity<ByteArrayResource> downloadMismatchesExcel(
-            @RequestParam("purchaseFile") MultipartFile purchaseFile,
-            @RequestParam("gstr2bFile") MultipartFile gstr2bFile) {
+            @RequestParam(value = "purchaseFile", required = false) MultipartFile purchaseFile,
+            @RequestParam(value = "gstr2bFile", required = false) MultipartFile gstr2bFile,
+            @RequestParam(value = "runId", required = false) String runId) {
 
         try {
-            // Parse files
-            List<PurchaseInvoiceDTO> purchases;
-            List<Gstr2BDTO> gstr2bList;
-
-            try (InputStream purchaseStream = purchaseFile.getInputStream();
-                 InputStream gstr2bStream = gstr2bFile.getInputStream()) {
-
-                purchases = purchaseParser.parse(purchaseStream);
-                gstr2bList = gstr2BParser.parse(gstr2bStream);
-            }
-
-            // Reconcile
-            List<ReconciliationResult> results = reconciliationService.reconcile(purchases, gstr2bList);
+            // Reconcile the files, or reuse an earlier run
+            CachedRun run = runRegistry.resolve(runId, purchaseFile, gstr2bFile, null);
 
             // Generate simple Excel with mismatches
-            byte[] excelBytes = generateSimpleMismatchExcel(results);
+            byte[] excelBytes = generateSimpleMismatchExcel(run.getResults());
 
             // Create filename
             String filename = "GST_Mismatches_Report.xlsx";
@@ -148,59 +114,68 @@ public class CAReportController {
 
             return ResponseEntity.ok()
                     .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                    .header("X-Run-Id", run.getRunId())
                     .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
                     .contentLength(excelBytes.length)
                     .body(resource);
 
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
     }
 
+    // SXSSF keeps only a window of rows in memory, so the sheet is never held in full
     private byte[] generateSimpleMismatchExcel(List<ReconciliationResult> results) throws Exception {
         // Create workbook
-        org.apache.poi.xssf.usermodel.XSSFWorkbook workbook = new org.apache.poi.xssf.usermodel.XSSFWorkbook();
+        org.apache.poi.xssf.streaming.SXSSFWorkbook workbook = new org.apache.poi.xssf.streaming.SXSSFWorkbook(100);
 
-        // Create sheet
-        org.apache.poi.ss.usermodel.Sheet sheet = workbook.createSheet("Mismatches");
-
-        // Create header row
-        org.apache.poi.ss.usermodel.Row headerRow = sheet.createRow(0);
-        String[] headers = {"Supplier GSTIN", "Invoice No", "Month", "Status",
-                "Purchase Tax", "2B Tax", "ITC at Risk", "Remarks"};
-
-        for (int i = 0; i < headers.length; i++) {
-            org.apache.poi.ss.usermodel.Cell cell = headerRow.createCell(i);
-            cell.setCellValue(headers[i]);
-        }
+        try {
+            // Create sheet
+            org.apache.poi.xssf.streaming.SXSSFSheet sheet = workbook.createSheet("Mismatches");
+            sheet.trackAllColumnsForAutoSizing();
+
+            // Create header row
+            org.apache.poi.ss.usermodel.Row headerRow = sheet.createRow(0);
+            String[] headers = {"Supplier GSTIN", "Invoice No", "Month", "Status",
+                    "Purchase Tax", "2B Tax", "ITC at Risk", "Remarks"};
+
+            for (int i = 0; i < headers.length; i++) {
+                org.apache.poi.ss.usermodel.Cell cell = headerRow.createCell(i);
+                cell.setCellValue(headers[i]);
+            }
 
-        // Add data rows
-        int rowNum = 1;
-        for (ReconciliationResult result : results) {
-            if (!result.getStatus().startsWith("MATCHED")) {
-                org.apache.poi.ss.usermodel.Row row = sheet.createRow(rowNum++);
-
-                row.createCell(0).setCellValue(result.getSupplierGstin());
-                row.createCell(1).setCellValue(result.getInvoiceNo());
-                row.createCell(2).setCellValue(result.getInvoiceMonth().toString());
-                row.createCell(3).setCellValue(result.getStatus());
-                row.createCell(4).setCellValue(result.getPurchaseTax().doubleValue());
-                row.createCell(5).setCellValue(result.getGstr2bTax().doubleValue());
-                row.createCell(6).setCellValue(result.getItcAtRisk().doubleValue());
-                row.createCell(7).setCellValue(result.getRemarks());
+            // Add data rows
+            int rowNum = 1;
+            for (ReconciliationResult result : results) {
+                if (!result.getStatus().isMatched()) {
+                    org.apache.poi.ss.usermodel.Row row = sheet.createRow(rowNum++);
+
+                    row.createCell(0).setCellValue(result.getSupplierGstin());
+                    row.createCell(1).setCellValue(result.getInvoiceNo());
+                    row.createCell(2).setCellValue(result.getInvoiceMonth().toString());
+                    row.createCell(3).setCellValue(result.getStatus().name());
+                    row.createCell(4).setCellValue(result.getPurchaseTax().doubleValue());
+                    row.createCell(5).setCellValue(result.getGstr2bTax().doubleValue());
+                    row.createCell(6).setCellValue(result.getItcAtRisk().doubleValue());
+                    row.createCell(7).setCellValue(result.getRemarks());
+                }
             }
-        }
 
-        // Auto-size columns
-        for (int i = 0; i < headers.length; i++) {
-            sheet.autoSizeColumn(i);
-        }
+            // Auto-size columns (widths were tracked as rows were flushed)
+            for (int i = 0; i < headers.length; i++) {
+                sheet.autoSizeColumn(i);
+            }
 
-        // Write to byte array
-        try (java.io.ByteArrayOutputStream baos = new java.io.ByteArrayOutputStream()) {
-            workbook.write(baos);
-            return baos.toByteArray();
+            // Write to byte array
+            try (java.io.ByteArrayOutputStream baos = new java.io.ByteArrayOutputStream()) {
+                workbook.write(baos);
+                return baos.toByteArray();
+            }
         } finally {
+            // Removes the temporary files backing the flushed rows
+            workbook.dispose();
             workbook.close();
         }
     }
@@ -1,140 +1,157 @@
 package com.RK8.V2.Controller;
 
+import com.RK8.V2.DTO.CachedRun;
 import com.RK8.V2.DTO.Gstr2BDTO;
+import com.RK8.V2.DTO.MismatchDetail;
+import com.RK8.V2.DTO.Money;
+import com.RK8.V2.DTO.MonthRisk;
+import com.RK8.V2.DTO.ParsedUploads;
 import com.RK8.V2.DTO.PurchaseInvoiceDTO;
 import com.RK8.V2.DTO.ReconciliationResult;
-import com.RK8.V2.Parser.Gstr2BExcelParser;
-import com.RK8.V2.Parser.PurchaseExcelParser;
+import com.RK8.V2.DTO.ReconciliationStatus;
+import com.RK8.V2.DTO.ResultDetail;
+import com.RK8.V2.DTO.RunReport;
+import com.RK8.V2.DTO.StrategyStats;
 import com.RK8.V2.Service.CAReportService;
 import com.RK8.V2.Service.Purchase2BReconciliationService;
+import com.RK8.V2.Service.ReconciliationHistoryStore;
+import com.RK8.V2.Service.ReconciliationRunRegistry;
+import com.RK8.V2.Service.ResultAggregate;
+import com.RK8.V2.Service.ResultFile;
 import com.RK8.V2.Service.ReconciliationReportService;
+import com.RK8.V2.Service.UploadParsingService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.InputStream;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
-import java.math.BigDecimal;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/reconcile")
 public class ReconciliationController {
-
-    private final PurchaseExcelParser purchaseParser;
-    private final Gstr2BExcelParser gstr2bParser;
+    private static final Money HIGH_PRIORITY_AMOUNT = Money.ofRupees(10000);
+    private static final Money MEDIUM_PRIORITY_AMOUNT = Money.ofRupees(1000);
+    static final String RUN_ID_HEADER = "X-Run-Id";
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final String NDJSON = "application/x-ndjson";
+    private static final List<String> DETAIL_LISTS = List.of(
+            "allMismatches", "missingInPurchaseList", "missingIn2BList", "matchedItems");
+    // Same order as the ResultDetail columns
+    private static final List<String> DETAIL_FIELDS = List.of(
+            "gstin", "invoiceNo", "status", "purchaseTax", "gstr2bTax", "itcAtRisk", "remarks", "invoiceMonth");
+    // Missing 2B tax sorts last
+    private static final Comparator<Money> TAX_DESC = Comparator.nullsLast(Comparator.<Money>reverseOrder());
+
+    private final UploadParsingService uploadParsingService;
     private final Purchase2BReconciliationService reconciliationService;
     private final ReconciliationReportService reportService;
     private final CAReportService re;
+    private final ReconciliationRunRegistry runRegistry;
+    private final ReconciliationHistoryStore historyStore;
+    // The application's mapper, so /stream records serialize like every other response
+    private final ObjectMapper objectMapper;
 
     public ReconciliationController(
-            PurchaseExcelParser purchaseParser,
-            Gstr2BExcelParser gstr2bParser,
-            Purchase2BReconciliationService reconciliationService, ReconciliationReportService reportService, CAReportService re
+            UploadParsingService uploadParsingService,
+            Purchase2BReconciliationService reconciliationService, ReconciliationReportService reportService, CAReportService re,
+            ReconciliationRunRegistry runRegistry, ReconciliationHistoryStore historyStore, ObjectMapper objectMapper
     ) {
-        this.purchaseParser = purchaseParser;
-        this.gstr2bParser = gstr2bParser;
+        this.uploadParsingService = uploadParsingService;
         this.reconciliationService = reconciliationService;
         this.reportService = reportService;
         this.re = re;
+        this.runRegistry = runRegistry;
+        this.historyStore = historyStore;
+        this.objectMapper = objectMapper;
     }
 
+    // Summary and counts always; the detail lists only when named in include, one page of at
+    // most limit rows each, restricted to fields when given. Each page comes with a cursor for
+    // the next one; passing cursor (with the same fields/limit) returns just that next page.
     @PostMapping("/upload")
-    public Map<String, Object> uploadFiles(
-            @RequestParam("purchaseFile") MultipartFile purchaseFile,
-            @RequestParam("gstr2bFile") MultipartFile gstr2bFile) {
+    public ResponseEntity<Map<String, Object>> uploadFiles(
+            @RequestParam(value = "purchaseFile", required = false) MultipartFile purchaseFile,
+            @RequestParam(value = "gstr2bFile", required = false) MultipartFile gstr2bFile,
+            @RequestParam(value = "runId", required = false) String runId,
+            @RequestParam(value = "strategies", required = false) List<String> strategies,
+            @RequestParam(value = "clientGstin", required = false) String clientGstin,
+            @RequestParam(value = "period", required = false) String period,
+            @RequestParam(value = "include", required = false) List<String> include,
+            @RequestParam(value = "fields", required = false) List<String> fields,
+            @RequestParam(value = "limit", defaultValue = "100") int limit,
+            @RequestParam(value = "cursor", required = false) String cursor) {
 
         Map<String, Object> response = new HashMap<>();
 
+        // Labels for the history store; reject what it could not hold
         try {
-            // Parse files
-            List<PurchaseInvoiceDTO> purchases;
-            List<Gstr2BDTO> gstr2bList;
-
-            try (InputStream purchaseStream = purchaseFile.getInputStream();
-                 InputStream gstr2bStream = gstr2bFile.getInputStream()) {
+            clientGstin = historyStore.clientGstin(clientGstin);
+            period = historyStore.period(period);
+        } catch (IllegalArgumentException e) {
+            response.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
 
-                purchases = purchaseParser.parse(purchaseStream);
-                gstr2bList = gstr2bParser.parse(gstr2bStream);
+        try {
+            boolean[] columns = detailFields(fields);
+            int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+            Map<String, Object> pages = new HashMap<>();
+
+            if (cursor != null && !cursor.trim().isEmpty()) {
+                // Next page of one list; served from the run's ResultFile once it has left the cache
+                String[] position = decodeCursor(cursor.trim());
+                List<ReconciliationResult> results = runRegistry.resultRows(position[0]);
+                response.put("runId", position[0]);
+                putDetailPage(response, pages, position[0], results, position[1], Integer.parseInt(position[2]),
+                        pageSize, columns);
+                response.put("pages", pages);
+                return ResponseEntity.ok(response);
             }
 
+            // Reconcile the files, or reuse an earlier run
+            CachedRun run = runRegistry.resolve(runId, purchaseFile, gstr2bFile, strategies, clientGstin, period);
+            List<PurchaseInvoiceDTO> purchases = run.getPurchases();
+            List<Gstr2BDTO> gstr2bList = run.getGstr2bList();
+            List<ReconciliationResult> results = run.getResults();
+
+            response.put("runId", run.getRunId());
             response.put("purchaseCount", purchases.size());
             response.put("gstr2bCount", gstr2bList.size());
 
-            // Reconcile
-            List<ReconciliationResult> results = reconciliationService.reconcile(purchases, gstr2bList);
-
-            // Calculate statistics
-            long matched = results.stream().filter(r -> r.getStatus().startsWith("MATCHED")).count();
-            long mismatch = results.stream().filter(r -> "MISMATCH".equals(r.getStatus())).count();
-            long missingIn2B = results.stream().filter(r -> "MISSING_IN_2B".equals(r.getStatus())).count();
-            long missingInPurchase = results.stream().filter(r -> "MISSING_IN_PURCHASE".equals(r.getStatus())).count();
-
-            BigDecimal totalItcAtRisk = results.stream()
-                    .map(ReconciliationResult::getItcAtRisk)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-            // Get ALL mismatches (non-matched items)
-            List<Map<String, Object>> allMismatches = new ArrayList<>();
-            List<Map<String, Object>> matchedItems = new ArrayList<>();
-            List<Map<String, Object>> missingInPurchaseList = new ArrayList<>();
-            List<Map<String, Object>> missingIn2BList = new ArrayList<>();
-
-            for (ReconciliationResult r : results) {
-                Map<String, Object> detail = new HashMap<>();
-                detail.put("gstin", r.getSupplierGstin());
-                detail.put("invoiceNo", r.getInvoiceNo());
-                detail.put("status", r.getStatus());
-                detail.put("purchaseTax", r.getPurchaseTax());
-                detail.put("gstr2bTax", r.getGstr2bTax());
-                detail.put("itcAtRisk", r.getItcAtRisk());
-                detail.put("remarks", r.getRemarks());
-                detail.put("invoiceMonth", r.getInvoiceMonth().toString());
-
-                // Categorize
-                if (r.getStatus().startsWith("MATCHED")) {
-                    matchedItems.add(detail);
-                } else if ("MISSING_IN_PURCHASE".equals(r.getStatus())) {
-                    missingInPurchaseList.add(detail);
-                    allMismatches.add(detail); // Add to mismatches
-                } else if ("MISSING_IN_2B".equals(r.getStatus())) {
-                    missingIn2BList.add(detail);
-                    allMismatches.add(detail); // Add to mismatches
-                } else if ("MISMATCH".equals(r.getStatus())) {
-                    allMismatches.add(detail);
-                }
-            }
-
-            // Sort mismatches by tax amount (descending)
-            allMismatches.sort((a, b) -> {
-                BigDecimal taxA = (BigDecimal) a.get("gstr2bTax");
-                BigDecimal taxB = (BigDecimal) b.get("gstr2bTax");
-                if (taxA == null && taxB == null) return 0;
-                if (taxA == null) return 1;
-                if (taxB == null) return -1;
-                return taxB.compareTo(taxA); // Descending order
-            });
-
-            // Sort missing in purchase by tax amount (descending)
-            missingInPurchaseList.sort((a, b) -> {
-                BigDecimal taxA = (BigDecimal) a.get("gstr2bTax");
-                BigDecimal taxB = (BigDecimal) b.get("gstr2bTax");
-                if (taxA == null && taxB == null) return 0;
-                if (taxA == null) return 1;
-                if (taxB == null) return -1;
-                return taxB.compareTo(taxA); // Descending order
-            });
+            // Calculate statistics in one pass
+            ResultAggregate totals = ResultAggregate.of(results, 0);
+            long matched = totals.getMatched();
+            long mismatch = totals.count(ReconciliationStatus.MISMATCH);
+            long missingIn2B = totals.count(ReconciliationStatus.MISSING_IN_2B);
+            long missingInPurchase = totals.count(ReconciliationStatus.MISSING_IN_PURCHASE);
+            Money totalItcAtRisk = totals.getItcAtRisk();
 
             response.put("totalResults", results.size());
             response.put("matched", matched);
@@ -144,24 +161,22 @@ public class ReconciliationController {
             response.put("itcAtRisk", totalItcAtRisk);
 
             // Group by status for breakdown
-            Map<String, Long> statusBreakdown = results.stream()
-                    .collect(Collectors.groupingBy(ReconciliationResult::getStatus, Collectors.counting()));
-            response.put("statusBreakdown", statusBreakdown);
+            response.put("statusBreakdown", totals.getStatusCounts());
 
-            // Add all mismatches
-            response.put("allMismatches", allMismatches);
-
-            // Add categorized lists
-            response.put("missingInPurchaseList", missingInPurchaseList);
-            response.put("missingIn2BList", missingIn2BList);
-            response.put("matchedItems", matchedItems);
+            // First page of each requested list
+            if (include != null) {
+                for (String list : include) {
+                    putDetailPage(response, pages, run.getRunId(), results, list.trim(), 0, pageSize, columns);
+                }
+                response.put("pages", pages);
+            }
 
             // Add summary for quick view
             Map<String, Object> summary = new HashMap<>();
             summary.put("totalInvoicesIn2B", gstr2bList.size());
             summary.put("totalInvoicesInPurchase", purchases.size());
             summary.put("matchedInvoices", matched);
-            summary.put("unmatchedInvoices", allMismatches.size());
+            summary.put("unmatchedInvoices", mismatch + missingIn2B + missingInPurchase);
             summary.put("totalItcAvailableIn2B", calculateTotalTax(gstr2bList));
             summary.put("totalItcClaimedInPurchase", calculateTotalTaxFromPurchases(purchases));
             summary.put("itcAtRisk", totalItcAtRisk);
@@ -169,100 +184,204 @@ public class ReconciliationController {
                     (matched * 100.0) / Math.max(gstr2bList.size(), purchases.size())));
 
             response.put("summary", summary);
+            response.put("strategyStats", run.getStrategyStats());
 
         } catch (Exception e) {
             response.put("error", e.getMessage());
             e.printStackTrace();
         }
 
-        return response;
+        return ResponseEntity.ok(response);
     }
 
-    @PostMapping("/detailed-report")
-    public Map<String, Object> getDetailedReport(
-            @RequestParam("purchaseFile") MultipartFile purchaseFile,
-            @RequestParam("gstr2bFile") MultipartFile gstr2bFile) {
+    // One page of a detail list as projected rows, plus its total and next cursor under pages.
+    // The list's row order is worked out once per run and reused by every later page.
+    private void putDetailPage(Map<String, Object> response, Map<String, Object> pages, String runId,
+                               List<ReconciliationResult> results, String list, int offset, int pageSize,
+                               boolean[] columns) {
+        if (!DETAIL_LISTS.contains(list)) {
+            throw new IllegalArgumentException("Unknown list '" + list + "'; expected one of " + DETAIL_LISTS);
+        }
+        int[] rows = runRegistry.view(runId, list, () -> detailRows(results, list));
+        int from = Math.min(Math.max(0, offset), rows.length);
+        int to = Math.min(rows.length, from + pageSize);
 
-        Map<String, Object> response = new HashMap<>();
+        List<ResultDetail> page = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            page.add(detail(results.get(rows[i]), columns));
+        }
+        response.put(list, page);
 
-        try {
-            // Parse files
-            List<PurchaseInvoiceDTO> purchases;
-            List<Gstr2BDTO> gstr2bList;
+        Map<String, Object> info = new HashMap<>();
+        info.put("total", rows.length);
+        info.put("offset", from);
+        info.put("nextCursor", to < rows.length ? encodeCursor(runId, list, to) : null);
+        pages.put(list, info);
+    }
+
+    // Row numbers of one /upload detail list, in the order the list has always been returned
+    private static int[] detailRows(List<ReconciliationResult> results, String list) {
+        Predicate<ReconciliationStatus> keep;
+        boolean byTax;
+        switch (list) {
+            case "matchedItems":
+                keep = ReconciliationStatus::isMatched;
+                byTax = false;
+                break;
+            case "missingIn2BList":
+                keep = s -> s == ReconciliationStatus.MISSING_IN_2B;
+                byTax = false;
+                break;
+            case "missingInPurchaseList":
+                // Sorted by 2B tax amount (descending)
+                keep = s -> s == ReconciliationStatus.MISSING_IN_PURCHASE;
+                byTax = true;
+                break;
+            case "allMismatches":
+                // All non-matched items, sorted by 2B tax amount (descending)
+                keep = s -> !s.isMatched();
+                byTax = true;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown list '" + list + "'; expected one of " + DETAIL_LISTS);
+        }
+
+        // One read per row: results may be backed by a ResultFile
+        int n = 0;
+        int[] rows = new int[results.size()];
+        List<Money> taxes = new ArrayList<>();
+        for (int i = 0; i < results.size(); i++) {
+            ReconciliationResult r = results.get(i);
+            if (!keep.test(r.getStatus())) continue;
+            rows[n++] = i;
+            if (byTax) taxes.add(r.getGstr2bTax());
+        }
+        rows = Arrays.copyOf(rows, n);
+        if (!byTax) return rows;
 
-            try (InputStream purchaseStream = purchaseFile.getInputStream();
-                 InputStream gstr2bStream = gstr2bFile.getInputStream()) {
+        // Stable, so equal amounts keep result order
+        Integer[] order = new Integer[n];
+        for (int k = 0; k < n; k++) {
+            order[k] = k;
+        }
+        Arrays.sort(order, Comparator.comparing(taxes::get, TAX_DESC));
+        int[] sorted = new int[n];
+        for (int k = 0; k < n; k++) {
+            sorted[k] = rows[order[k]];
+        }
+        return sorted;
+    }
 
-                purchases = purchaseParser.parse(purchaseStream);
-                gstr2bList = gstr2bParser.parse(gstr2bStream);
+    private static ResultDetail detail(ReconciliationResult r, boolean[] columns) {
+        return new ResultDetail(
+                columns[0] ? r.getSupplierGstin() : null,
+                columns[1] ? r.getInvoiceNo() : null,
+                columns[2] ? r.getStatus() : null,
+                columns[3] ? r.getPurchaseTax() : null,
+                columns[4] ? r.getGstr2bTax() : null,
+                columns[5] ? r.getItcAtRisk() : null,
+                columns[6] ? r.getRemarks() : null,
+                columns[7] && r.getInvoiceMonth() != null ? r.getInvoiceMonth().toString() : null);
+    }
+
+    // Which DETAIL_FIELDS to fill in, by position; all of them when fields is not given
+    private static boolean[] detailFields(List<String> fields) {
+        boolean[] columns = new boolean[DETAIL_FIELDS.size()];
+        if (fields == null || fields.isEmpty()) {
+            Arrays.fill(columns, true);
+            return columns;
+        }
+        for (String f : fields) {
+            int column = DETAIL_FIELDS.indexOf(f.trim());
+            if (column < 0) {
+                throw new IllegalArgumentException("Unknown field '" + f.trim() + "'; expected one of " + DETAIL_FIELDS);
             }
+            columns[column] = true;
+        }
+        return columns;
+    }
 
-            // Reconcile
-            List<ReconciliationResult> results = reconciliationService.reconcile(purchases, gstr2bList);
+    // Opaque to callers: run ID, list name and offset of the next row
+    private static String encodeCursor(String runId, String list, int offset) {
+        String raw = runId + ":" + list + ":" + offset;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decodeCursor(String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+            if (parts.length == 3) {
+                Integer.parseInt(parts[2]);
+                return parts;
+            }
+        } catch (IllegalArgumentException ignored) {
+        }
+        throw new IllegalArgumentException("Invalid cursor");
+    }
+
+    @PostMapping("/detailed-report")
+    public Map<String, Object> getDetailedReport(
+            @RequestParam(value = "purchaseFile", required = false) MultipartFile purchaseFile,
+            @RequestParam(value = "gstr2bFile", required = false) MultipartFile gstr2bFile,
+            @RequestParam(value = "runId", required = false) String runId,
+            @RequestParam(value = "strategies", required = false) List<String> strategies) {
+
+        Map<String, Object> response = new HashMap<>();
+
+        try {
+            // Reconcile the files, or reuse an earlier run
+            CachedRun run = runRegistry.resolve(runId, purchaseFile, gstr2bFile, strategies);
+            List<PurchaseInvoiceDTO> purchases = run.getPurchases();
+            List<Gstr2BDTO> gstr2bList = run.getGstr2bList();
+            List<ReconciliationResult> results = run.getResults();
 
             // Prepare detailed report
-            List<Map<String, Object>> detailedMismatches = new ArrayList<>();
+            List<MismatchDetail> detailedMismatches = new ArrayList<>();
 
             for (ReconciliationResult r : results) {
-                if (!r.getStatus().startsWith("MATCHED")) {
-                    Map<String, Object> detail = new HashMap<>();
-                    detail.put("supplierGstin", r.getSupplierGstin());
-                    detail.put("invoiceNo", r.getInvoiceNo());
-                    detail.put("invoiceMonth", r.getInvoiceMonth().toString());
-                    detail.put("status", r.getStatus());
-                    detail.put("purchaseTaxAmount", r.getPurchaseTax());
-                    detail.put("gstr2bTaxAmount", r.getGstr2bTax());
-                    detail.put("taxDifference", r.getGstr2bTax().subtract(r.getPurchaseTax()).abs());
-                    detail.put("itcAtRiskAmount", r.getItcAtRisk());
-                    detail.put("actionRequired", getActionRequired(r.getStatus()));
-                    detail.put("priority", getPriority(r.getItcAtRisk()));
-                    detail.put("remarks", r.getRemarks());
-
-                    detailedMismatches.add(detail);
+                if (!r.getStatus().isMatched()) {
+                    detailedMismatches.add(new MismatchDetail(
+                            r.getSupplierGstin(),
+                            r.getInvoiceNo(),
+                            r.getInvoiceMonth().toString(),
+                            r.getStatus(),
+                            r.getPurchaseTax(),
+                            r.getGstr2bTax(),
+                            r.getGstr2bTax().minus(r.getPurchaseTax()).abs(),
+                            r.getItcAtRisk(),
+                            getActionRequired(r.getStatus()),
+                            getPriority(r.getItcAtRisk()),
+                            r.getRemarks()));
                 }
             }
 
             // Sort by ITC at risk (descending)
-            detailedMismatches.sort((a, b) -> {
-                BigDecimal riskA = (BigDecimal) a.get("itcAtRiskAmount");
-                BigDecimal riskB = (BigDecimal) b.get("itcAtRiskAmount");
-                return riskB.compareTo(riskA);
-            });
+            detailedMismatches.sort(Comparator.comparing(MismatchDetail::getItcAtRiskAmount).reversed());
 
-            // Calculate totals
-            BigDecimal totalRisk = detailedMismatches.stream()
-                    .map(d -> (BigDecimal) d.get("itcAtRiskAmount"))
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+            // Calculate totals and the month rollup in one pass
+            ResultAggregate totals = ResultAggregate.of(results, 0);
+            Money totalRisk = totals.getUnmatchedRisk();
 
             // Group by action required
-            Map<String, List<Map<String, Object>>> groupedByAction = detailedMismatches.stream()
-                    .collect(Collectors.groupingBy(d -> (String) d.get("actionRequired")));
+            Map<String, List<MismatchDetail>> groupedByAction = detailedMismatches.stream()
+                    .collect(Collectors.groupingBy(MismatchDetail::getActionRequired));
 
+            response.put("runId", run.getRunId());
             response.put("totalMismatches", detailedMismatches.size());
             response.put("totalItcAtRisk", totalRisk);
             response.put("mismatchesByAction", groupedByAction);
             response.put("allMismatchesDetails", detailedMismatches);
 
             // Add month-wise summary
-            Map<String, Map<String, Object>> monthSummary = new HashMap<>();
-            for (Map<String, Object> mismatch : detailedMismatches) {
-                String month = (String) mismatch.get("invoiceMonth");
-                BigDecimal risk = (BigDecimal) mismatch.get("itcAtRiskAmount");
-
-                monthSummary.computeIfAbsent(month, k -> {
-                    Map<String, Object> monthData = new HashMap<>();
-                    monthData.put("month", month);
-                    monthData.put("count", 0);
-                    monthData.put("totalRisk", BigDecimal.ZERO);
-                    return monthData;
-                });
-
-                Map<String, Object> monthData = monthSummary.get(month);
-                monthData.put("count", (Integer) monthData.get("count") + 1);
-                monthData.put("totalRisk", ((BigDecimal) monthData.get("totalRisk")).add(risk));
-            }
+            List<MonthRisk> monthSummary = new ArrayList<>();
+            totals.getMonths().forEach((month, t) -> {
+                if (t.getUnmatchedCount() > 0) {
+                    monthSummary.add(new MonthRisk(month, (int) t.getUnmatchedCount(), t.getUnmatchedRisk()));
+                }
+            });
 
-            response.put("monthWiseSummary", new ArrayList<>(monthSummary.values()));
+            response.put("monthWiseSummary", monthSummary);
+            response.put("strategyStats", run.getStrategyStats());
 
         } catch (Exception e) {
             response.put("error", e.getMessage());
@@ -271,101 +390,124 @@ public class ReconciliationController {
         return response;
     }
 
-    private String getActionRequired(String status) {
+    // One page of a run's results, optionally only one status. Served from the mapped result
+    // store, so it keeps working after the run has left the in-memory cache.
+    @GetMapping("/runs/{runId}/results")
+    public ResponseEntity<Map<String, Object>> getRunResults(
+            @PathVariable String runId,
+            @RequestParam(value = "status", required = false) String status,
+            @RequestParam(value = "page", defaultValue = "0") int page,
+            @RequestParam(value = "size", defaultValue = "100") int size) {
+        Map<String, Object> response = new HashMap<>();
+        ResultFile results;
+        try {
+            results = runRegistry.results(runId);
+        } catch (IllegalArgumentException e) {
+            response.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        int pageNo = Math.max(0, page);
+        int total = results.count(status);
+        response.put("runId", runId);
+        response.put("status", status);
+        response.put("page", pageNo);
+        response.put("size", pageSize);
+        response.put("total", total);
+        response.put("totalPages", (total + pageSize - 1) / pageSize);
+        response.put("statusCounts", results.statusCounts());
+        response.put("results", results.page(status, (int) Math.min(Integer.MAX_VALUE, (long) pageNo * pageSize), pageSize));
+        return ResponseEntity.ok(response);
+    }
+
+    // Drops a run from the cache and the result store
+    @DeleteMapping("/runs/{runId}")
+    public ResponseEntity<Void> deleteRun(@PathVariable String runId) {
+        return runRegistry.remove(runId) ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+    }
+
+    // Per-strategy timings, candidates examined and hits since startup
+    @GetMapping("/strategy-metrics")
+    public List<StrategyStats> getStrategyMetrics() {
+        return reconciliationService.getStrategyMetrics();
+    }
+
+    private String getActionRequired(ReconciliationStatus status) {
         switch (status) {
-            case "MISSING_IN_PURCHASE":
+            case MISSING_IN_PURCHASE:
                 return "Add to Purchase Register";
-            case "MISSING_IN_2B":
+            case MISSING_IN_2B:
                 return "Follow up with Supplier";
-            case "MISMATCH":
+            case MISMATCH:
                 return "Verify Tax Amount";
             default:
                 return "Review";
         }
     }
 
-    private String getPriority(BigDecimal itcAtRisk) {
-        if (itcAtRisk.compareTo(new BigDecimal("10000")) > 0) {
+    private String getPriority(Money itcAtRisk) {
+        if (itcAtRisk.compareTo(HIGH_PRIORITY_AMOUNT) > 0) {
             return "HIGH";
-        } else if (itcAtRisk.compareTo(new BigDecimal("1000")) > 0) {
+        } else if (itcAtRisk.compareTo(MEDIUM_PRIORITY_AMOUNT) > 0) {
             return "MEDIUM";
         } else {
             return "LOW";
         }
     }
 
-    private BigDecimal calculateTotalTax(List<Gstr2BDTO> gstr2bList) {
+    private Money calculateTotalTax(List<Gstr2BDTO> gstr2bList) {
         return gstr2bList.stream()
-                .map(g -> g.getIgst().add(g.getCgst()).add(g.getSgst()))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+                .map(Gstr2BDTO::getTotalTax)
+                .reduce(Money.ZERO, Money::plus);
     }
 
-    private BigDecimal calculateTotalTaxFromPurchases(List<PurchaseInvoiceDTO> purchases) {
+    private Money calculateTotalTaxFromPurchases(List<PurchaseInvoiceDTO> purchases) {
         return purchases.stream()
-                .map(p -> p.getIgst().add(p.getCgst()).add(p.getSgst()))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+                .map(PurchaseInvoiceDTO::getTotalTax)
+                .reduce(Money.ZERO, Money::plus);
     }
 
     @PostMapping("/generate-report")
-    public Map<String, Object> generateReport(
-            @RequestParam("purchaseFile") MultipartFile purchaseFile,
-            @RequestParam("gstr2bFile") MultipartFile gstr2bFile) {
+    public ResponseEntity<?> generateReport(
+            @RequestParam(value = "purchaseFile", required = false) MultipartFile purchaseFile,
+            @RequestParam(value = "gstr2bFile", required = false) MultipartFile gstr2bFile,
+            @RequestParam(value = "runId", required = false) String runId,
+            @RequestParam(value = "strategies", required = false) List<String> strategies) {
 
         Map<String, Object> response = new HashMap<>();
 
         try {
-            // Parse files
-            List<PurchaseInvoiceDTO> purchases;
-            List<Gstr2BDTO> gstr2bList;
-
-            try (InputStream purchaseStream = purchaseFile.getInputStream();
-                 InputStream gstr2bStream = gstr2bFile.getInputStream()) {
-
-                purchases = purchaseParser.parse(purchaseStream);
-                gstr2bList = gstr2bParser.parse(gstr2bStream);
-            }
-
-            // Reconcile
-            List<ReconciliationResult> results = reconciliationService.reconcile(purchases, gstr2bList);
+            // Reconcile the files, or reuse an earlier run
+            CachedRun run = runRegistry.resolve(runId, purchaseFile, gstr2bFile, strategies);
 
-            // Generate detailed report
-            Map<String, Object> report = reportService.generateActionReport(results);
-
-            // Add basic stats
-            report.put("purchaseInvoiceCount", purchases.size());
-            report.put("gstr2bInvoiceCount", gstr2bList.size());
-
-            return report;
+            // Detailed report plus basic stats
+            return ResponseEntity.ok(new RunReport(
+                    run.getRunId(),
+                    run.getPurchases().size(),
+                    run.getGstr2bList().size(),
+                    run.getStrategyStats(),
+                    reportService.generateActionReport(run.getResults())));
 
         } catch (Exception e) {
             response.put("error", e.getMessage());
             e.printStackTrace();
-            return response;
+            return ResponseEntity.ok(response);
         }
     }
 
     @PostMapping("/download-report")
     public ResponseEntity<ByteArrayResource> downloadReport(
-            @RequestParam("purchaseFile") MultipartFile purchaseFile,
-            @RequestParam("gstr2bFile") MultipartFile gstr2bFile) {
+            @RequestParam(value = "purchaseFile", required = false) MultipartFile purchaseFile,
+            @RequestParam(value = "gstr2bFile", required = false) MultipartFile gstr2bFile,
+            @RequestParam(value = "runId", required = false) String runId) {
 
         try {
-            // Parse files
-            List<PurchaseInvoiceDTO> purchases;
-            List<Gstr2BDTO> gstr2bList;
-
-            try (InputStream purchaseStream = purchaseFile.getInputStream();
-                 InputStream gstr2bStream = gstr2bFile.getInputStream()) {
-
-                purchases = purchaseParser.parse(purchaseStream);
-                gstr2bList = gstr2bParser.parse(gstr2bStream);
-            }
-
-            // Reconcile
-            List<ReconciliationResult> results = reconciliationService.reconcile(purchases, gstr2bList);
+            // Reconcile the files, or reuse an earlier run
+            CachedRun run = runRegistry.resolve(runId, purchaseFile, gstr2bFile, null);
 
             // Generate CA report
-            byte[] reportBytes = re.generateCAReport(purchases, gstr2bList, results);
+            byte[] reportBytes = re.generateCAReport(run.getPurchases(), run.getGstr2bList(), run.getResults());
 
             // Create filename with timestamp
             String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
@@ -376,38 +518,169 @@ public class ReconciliationController {
 
             return ResponseEntity.ok()
                     .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                    .header(RUN_ID_HEADER, run.getRunId())
                     .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
                     .contentLength(reportBytes.length)
                     .body(resource);
 
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
     }
 
-    // Simple version without CA report service (if you just want mismatches)
-    @PostMapping("/download-mismatches")
-    public ResponseEntity<ByteArrayResource> downloadMismatchesExcel(
-            @RequestParam("purchaseFile") MultipartFile purchaseFile,
-            @RequestParam("gstr2bFile") MultipartFile gstr2bFile) {
+    // Newline-delimited JSON, written while the run is in progress: a "start" record straight
+    // away, "parsed" once both files are read, one "result" record per result as the matcher
+    // emits it, then a "summary" trailer (or an "error" record if the run fails midway).
+    // In INDEPENDENT assignment mode results follow each matched block of the register; the
+    // one-to-one modes decide every purchase together, so their results only start once the
+    // assignment is done. Results are not retained or cached here.
+    @PostMapping(value = "/stream", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamResults(
+            @RequestParam(value = "purchaseFile", required = false) MultipartFile purchaseFile,
+            @RequestParam(value = "gstr2bFile", required = false) MultipartFile gstr2bFile,
+            @RequestParam(value = "runId", required = false) String runId,
+            @RequestParam(value = "strategies", required = false) List<String> strategies) {
+
+        boolean replay = runId != null && !runId.trim().isEmpty();
+        if (!replay && (purchaseFile == null || gstr2bFile == null)) {
+            return ResponseEntity.badRequest().build();
+        }
 
-        try {
-            // Parse files
-            List<PurchaseInvoiceDTO> purchases;
-            List<Gstr2BDTO> gstr2bList;
+        StreamingResponseBody body = out -> {
+            JsonGenerator gen = objectMapper.createGenerator(out);
+            // The servlet container owns the response stream
+            gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            gen.setRootValueSeparator(null);
+            try {
+                gen.writeStartObject();
+                gen.writeStringField("type", "start");
+                gen.writeStringField("runId", replay ? runId.trim() : null);
+                gen.writeEndObject();
+                endRecord(gen);
+
+                List<PurchaseInvoiceDTO> purchases;
+                List<Gstr2BDTO> gstr2bList;
+                List<StrategyStats> stats;
+                NdjsonResultWriter writer = new NdjsonResultWriter(gen);
+                if (replay) {
+                    CachedRun run = runRegistry.get(runId.trim());
+                    purchases = run.getPurchases();
+                    gstr2bList = run.getGstr2bList();
+                    writeParsed(gen, purchases.size(), gstr2bList.size());
+                    run.getResults().forEach(writer);
+                    stats = run.getStrategyStats();
+                } else {
+                    ParsedUploads uploads = uploadParsingService.parse(purchaseFile, gstr2bFile);
+                    purchases = uploads.getPurchases();
+                    gstr2bList = uploads.getGstr2bList();
+                    writeParsed(gen, purchases.size(), gstr2bList.size());
+                    stats = reconciliationService.reconcile(purchases, uploads.getGstr2bIndex(), strategies, writer);
+                }
 
-            try (InputStream purchaseStream = purchaseFile.getInputStream();
-                 InputStream gstr2bStream = gstr2bFile.getInputStream()) {
+                gen.writeStartObject();
+                gen.writeStringField("type", "summary");
+                gen.writeNumberField("totalResults", writer.count);
+                gen.writeObjectField("statusBreakdown", writer.totals.getStatusCounts());
+                gen.writeObjectField("itcAtRisk", writer.totals.getItcAtRisk());
+                gen.writeObjectField("totalItcAvailableIn2B", calculateTotalTax(gstr2bList));
+                gen.writeObjectField("totalItcClaimedInPurchase", calculateTotalTaxFromPurchases(purchases));
+                gen.writeObjectField("strategyStats", stats);
+                gen.writeEndObject();
+                endRecord(gen);
+            } catch (Exception e) {
+                e.printStackTrace();
+                // The status line has gone out already; report the failure in-band
+                gen.writeStartObject();
+                gen.writeStringField("type", "error");
+                gen.writeStringField("error", e.getMessage());
+                gen.writeEndObject();
+                endRecord(gen);
+            } finally {
+                gen.close();
+            }
+        };
 
-                purchases = purchaseParser.parse(purchaseStream);
-                gstr2bList = gstr2bParser.parse(gstr2bStream);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON))
+                .body(body);
+    }
+
+    private static void writeParsed(JsonGenerator gen, int purchaseCount, int gstr2bCount) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("type", "parsed");
+        gen.writeNumberField("purchaseCount", purchaseCount);
+        gen.writeNumberField("gstr2bCount", gstr2bCount);
+        gen.writeEndObject();
+        endRecord(gen);
+    }
+
+    private static void endRecord(JsonGenerator gen) throws IOException {
+        gen.writeRaw('\n');
+        gen.flush();
+    }
+
+    // Writes each result as a record and keeps the running totals for the trailer
+    private static final class NdjsonResultWriter implements Consumer<ReconciliationResult> {
+        private static final int FLUSH_EVERY = 500;
+
+        private final JsonGenerator gen;
+        private final ResultAggregate totals = new ResultAggregate(0);
+        private long count;
+
+        NdjsonResultWriter(JsonGenerator gen) {
+            this.gen = gen;
+        }
+
+        @Override
+        public void accept(ReconciliationResult r) {
+            try {
+                gen.writeStartObject();
+                gen.writeStringField("type", "result");
+                gen.writeStringField("gstin", r.getSupplierGstin());
+                gen.writeStringField("invoiceNo", r.getInvoiceNo());
+                gen.writeStringField("status", r.getStatus().name());
+                gen.writeObjectField("purchaseTax", r.getPurchaseTax());
+                gen.writeObjectField("gstr2bTax", r.getGstr2bTax());
+                gen.writeObjectField("itcAtRisk", r.getItcAtRisk());
+                gen.writeStringField("remarks", r.getRemarks());
+                gen.writeStringField("invoiceMonth", r.getInvoiceMonth() == null ? null : r.getInvoiceMonth().toString());
+                gen.writeEndObject();
+                gen.writeRaw('\n');
+                if (++count % FLUSH_EVERY == 0) {
+                    gen.flush();
+                }
+            } catch (IOException e) {
+                // Client went away; stop the run rather than matching into a closed stream
+                throw new UncheckedIOException(e);
             }
+            totals.accept(r);
+        }
+    }
 
-            // Reconcile
-            List<ReconciliationResult> results = reconciliationService.reconcile(purchases, gstr2bList);
+    // Simple version without CA report service (if you just want mismatches)
+    @PostMapping("/download-mismatches")
+    public ResponseEntity<ByteArrayResource> downloadMismatchesExcel(
+            @RequestParam(value = "purchaseFile", required = false) MultipartFile purchaseFile,
+            @RequestParam(value = "gstr2bFile", required = false) MultipartFile gstr2bFile,
+            @RequestParam(value = "runId", required = false) String runId) {
 
-            // Generate simple Excel with mismatches
-            byte[] excelBytes = generateSimpleMismatchExcel(results);
+        try {
+            byte[] excelBytes;
+            if (runId != null && !runId.trim().isEmpty()) {
+                // Replay a cached run
+                excelBytes = generateSimpleMismatchExcel(runRegistry.get(runId.trim()).getResults()::forEach);
+            } else {
+                if (purchaseFile == null || gstr2bFile == null) {
+                    throw new IllegalArgumentException("Either runId or both purchaseFile and gstr2bFile are required");
+                }
+                // One-off download: reconcile straight into the workbook, one row at a time,
+                // without caching the run
+                ParsedUploads uploads = uploadParsingService.parse(purchaseFile, gstr2bFile);
+                excelBytes = generateSimpleMismatchExcel(sink ->
+                        reconciliationService.reconcile(uploads.getPurchases(), uploads.getGstr2bIndex(), null, sink));
+            }
 
             // Create filename
             String filename = "GST_Mismatches_Report.xlsx";
@@ -420,55 +693,64 @@ public class ReconciliationController {
                     .contentLength(excelBytes.length)
                     .body(resource);
 
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
     }
 
-    private byte[] generateSimpleMismatchExcel(List<ReconciliationResult> results) throws Exception {
+    // Streams results into an SXSSF workbook, which keeps only a window of rows in memory, so
+    // the full sheet is never held. results is handed the row writer and feeds it every result.
+    private byte[] generateSimpleMismatchExcel(Consumer<Consumer<ReconciliationResult>> results) throws Exception {
         // Create workbook
-        org.apache.poi.xssf.usermodel.XSSFWorkbook workbook = new org.apache.poi.xssf.usermodel.XSSFWorkbook();
+        org.apache.poi.xssf.streaming.SXSSFWorkbook workbook = new org.apache.poi.xssf.streaming.SXSSFWorkbook(100);
 
-        // Create sheet
-        org.apache.poi.ss.usermodel.Sheet sheet = workbook.createSheet("Mismatches");
-
-        // Create header row
-        org.apache.poi.ss.usermodel.Row headerRow = sheet.createRow(0);
-        String[] headers = {"Supplier GSTIN", "Invoice No", "Month", "Status",
-                "Purchase Tax", "2B Tax", "ITC at Risk", "Remarks"};
+        try {
+            // Create sheet
+            org.apache.poi.xssf.streaming.SXSSFSheet sheet = workbook.createSheet("Mismatches");
+            sheet.trackAllColumnsForAutoSizing();
+
+            // Create header row
+            org.apache.poi.ss.usermodel.Row headerRow = sheet.createRow(0);
+            String[] headers = {"Supplier GSTIN", "Invoice No", "Month", "Status",
+                    "Purchase Tax", "2B Tax", "ITC at Risk", "Remarks"};
+
+            for (int i = 0; i < headers.length; i++) {
+                org.apache.poi.ss.usermodel.Cell cell = headerRow.createCell(i);
+                cell.setCellValue(headers[i]);
+            }
 
-        for (int i = 0; i < headers.length; i++) {
-            org.apache.poi.ss.usermodel.Cell cell = headerRow.createCell(i);
-            cell.setCellValue(headers[i]);
-        }
+            // Add data rows as the reconciliation produces them
+            int[] rowNum = {1};
+            results.accept(result -> {
+                if (!result.getStatus().isMatched()) {
+                    org.apache.poi.ss.usermodel.Row row = sheet.createRow(rowNum[0]++);
+
+                    row.createCell(0).setCellValue(result.getSupplierGstin());
+                    row.createCell(1).setCellValue(result.getInvoiceNo());
+                    row.createCell(2).setCellValue(result.getInvoiceMonth().toString());
+                    row.createCell(3).setCellValue(result.getStatus().name());
+                    row.createCell(4).setCellValue(result.getPurchaseTax().doubleValue());
+                    row.createCell(5).setCellValue(result.getGstr2bTax().doubleValue());
+                    row.createCell(6).setCellValue(result.getItcAtRisk().doubleValue());
+                    row.createCell(7).setCellValue(result.getRemarks());
+                }
+            });
 
-        // Add data rows
-        int rowNum = 1;
-        for (ReconciliationResult result : results) {
-            if (!result.getStatus().startsWith("MATCHED")) {
-                org.apache.poi.ss.usermodel.Row row = sheet.createRow(rowNum++);
-
-                row.createCell(0).setCellValue(result.getSupplierGstin());
-                row.createCell(1).setCellValue(result.getInvoiceNo());
-                row.createCell(2).setCellValue(result.getInvoiceMonth().toString());
-                row.createCell(3).setCellValue(result.getStatus());
-                row.createCell(4).setCellValue(result.getPurchaseTax().doubleValue());
-                row.createCell(5).setCellValue(result.getGstr2bTax().doubleValue());
-                row.createCell(6).setCellValue(result.getItcAtRisk().doubleValue());
-                row.createCell(7).setCellValue(result.getRemarks());
+            // Auto-size columns (widths were tracked as rows were flushed)
+            for (int i = 0; i < headers.length; i++) {
+                sheet.autoSizeColumn(i);
             }
-        }
 
-        // Auto-size columns
-        for (int i = 0; i < headers.length; i++) {
-            sheet.autoSizeColumn(i);
-        }
-
-        // Write to byte array
-        try (java.io.ByteArrayOutputStream baos = new java.io.ByteArrayOutputStream()) {
-            workbook.write(baos);
-            return baos.toByteArray();
+            // Write to byte array
+            try (java.io.ByteArrayOutputStream baos = new java.io.ByteArrayOutputStream()) {
+                workbook.write(baos);
+                return baos.toByteArray();
+            }
         } finally {
+            // Removes the temporary files backing the flushed rows
+            workbook.dispose();
             workbook.close();
         }
     }
@@ -0,0 +1,79 @@
+package com.RK8.V2.Controller;
+
+import com.RK8.V2.DTO.ReconciliationResult;
+import com.RK8.V2.Service.ReconciliationHistoryStore;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Past reconciliations from the history store, for dashboards
+@RestController
+@RequestMapping("/api/history")
+public class ReconciliationHistoryController {
+    private static final int MAX_LIMIT = 500;
+    private static final int MAX_RESULTS = 1000;
+
+    private final ReconciliationHistoryStore historyStore;
+
+    public ReconciliationHistoryController(ReconciliationHistoryStore historyStore) {
+        this.historyStore = historyStore;
+    }
+
+    // Run summaries, newest first, optionally for one client and/or period (yyyy-MM)
+    @GetMapping("/runs")
+    public ResponseEntity<?> runs(
+            @RequestParam(value = "clientGstin", required = false) String clientGstin,
+            @RequestParam(value = "period", required = false) String period,
+            @RequestParam(value = "limit", defaultValue = "50") int limit) {
+        try {
+            clientGstin = historyStore.clientGstin(clientGstin);
+            period = historyStore.period(period);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> body = new HashMap<>();
+            body.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(body);
+        }
+
+        try {
+            return ResponseEntity.ok(historyStore.findRuns(clientGstin, period, Math.max(1, Math.min(limit, MAX_LIMIT))));
+        } catch (Exception e) {
+            return error(e);
+        }
+    }
+
+    // Stored result rows of one run in their original order, optionally only one status, at most
+    // limit at a time. nextSeq, passed back as fromSeq, continues with the next page; it is null
+    // after the last one.
+    @GetMapping("/runs/{id}/results")
+    public ResponseEntity<?> results(
+            @PathVariable long id,
+            @RequestParam(value = "status", required = false) String status,
+            @RequestParam(value = "fromSeq", defaultValue = "0") int fromSeq,
+            @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        try {
+            List<ReconciliationResult> results = new ArrayList<>();
+            int next = historyStore.findResults(id, status, Math.max(0, fromSeq),
+                    Math.max(1, Math.min(limit, MAX_RESULTS)), results);
+            Map<String, Object> body = new HashMap<>();
+            body.put("id", id);
+            body.put("status", status);
+            body.put("results", results);
+            body.put("nextSeq", next < 0 ? null : next);
+            return ResponseEntity.ok(body);
+        } catch (Exception e) {
+            return error(e);
+        }
+    }
+
+    private ResponseEntity<Map<String, Object>> error(Exception e) {
+        e.printStackTrace();
+        Map<String, Object> body = new HashMap<>();
+        body.put("error", e.getMessage());
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(body);
+    }
+}
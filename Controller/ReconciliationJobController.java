@@ -0,0 +1,143 @@
+package com.RK8.V2.Controller;
+
+import com.RK8.V2.DTO.CachedRun;
+import com.RK8.V2.DTO.JobStatus;
+import com.RK8.V2.DTO.RunReport;
+import com.RK8.V2.Service.CAReportService;
+import com.RK8.V2.Service.ReconciliationHistoryStore;
+import com.RK8.V2.Service.ReconciliationJobService;
+import com.RK8.V2.Service.ReconciliationReportService;
+import com.RK8.V2.Service.ReconciliationRunRegistry;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+// Submit / poll / fetch API for background reconciliations.
+// POST returns 202 with a job ID straight away; poll GET /{jobId} until the phase is DONE,
+// then fetch the JSON action report or the CA Excel report. The run ID in the status also
+// works with every runId-aware endpoint under /api/reconcile and /api/ca.
+@RestController
+@RequestMapping("/api/jobs")
+public class ReconciliationJobController {
+    private final ReconciliationJobService jobService;
+    private final ReconciliationRunRegistry runRegistry;
+    private final ReconciliationReportService reportService;
+    private final CAReportService caReportService;
+    private final ReconciliationHistoryStore historyStore;
+
+    public ReconciliationJobController(
+            ReconciliationJobService jobService,
+            ReconciliationRunRegistry runRegistry,
+            ReconciliationReportService reportService,
+            CAReportService caReportService,
+            ReconciliationHistoryStore historyStore
+    ) {
+        this.jobService = jobService;
+        this.runRegistry = runRegistry;
+        this.reportService = reportService;
+        this.caReportService = caReportService;
+        this.historyStore = historyStore;
+    }
+
+    @PostMapping
+    public ResponseEntity<?> submit(
+            @RequestParam("purchaseFile") MultipartFile purchaseFile,
+            @RequestParam("gstr2bFile") MultipartFile gstr2bFile,
+            @RequestParam(value = "strategies", required = false) List<String> strategies,
+            @RequestParam(value = "clientGstin", required = false) String clientGstin,
+            @RequestParam(value = "period", required = false) String period) {
+        // Bad labels would only fail the job's history write, after the reconciliation
+        try {
+            clientGstin = historyStore.clientGstin(clientGstin);
+            period = historyStore.period(period);
+        } catch (IllegalArgumentException e) {
+            return error(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(jobService.submit(purchaseFile, gstr2bFile, strategies, clientGstin, period));
+        } catch (RejectedExecutionException e) {
+            return error(HttpStatus.TOO_MANY_REQUESTS, "Job queue is full, try again later");
+        } catch (IllegalArgumentException e) {
+            return error(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (Exception e) {
+            e.printStackTrace();
+            return error(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
+        }
+    }
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<?> status(@PathVariable String jobId) {
+        JobStatus status = jobService.status(jobId);
+        if (status == null) {
+            return error(HttpStatus.NOT_FOUND, "Unknown job: " + jobId);
+        }
+        return ResponseEntity.ok(status);
+    }
+
+    @GetMapping("/{jobId}/result")
+    public ResponseEntity<?> result(@PathVariable String jobId) {
+        JobStatus status = jobService.status(jobId);
+        if (status == null) {
+            return error(HttpStatus.NOT_FOUND, "Unknown job: " + jobId);
+        }
+        if (status.getRunId() == null) {
+            // Still running, or failed
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(status);
+        }
+
+        CachedRun run;
+        try {
+            run = runRegistry.get(status.getRunId());
+        } catch (IllegalArgumentException e) {
+            return error(HttpStatus.GONE, e.getMessage());
+        }
+
+        return ResponseEntity.ok(new RunReport(run.getRunId(), run.getPurchases().size(),
+                run.getGstr2bList().size(), run.getStrategyStats(),
+                reportService.generateActionReport(run.getResults())));
+    }
+
+    @GetMapping("/{jobId}/report")
+    public ResponseEntity<?> report(@PathVariable String jobId) {
+        JobStatus status = jobService.status(jobId);
+        if (status == null) {
+            return error(HttpStatus.NOT_FOUND, "Unknown job: " + jobId);
+        }
+        if (status.getRunId() == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(status);
+        }
+
+        try {
+            CachedRun run = runRegistry.get(status.getRunId());
+            byte[] reportBytes = caReportService.generateCAReport(run.getPurchases(), run.getGstr2bList(), run.getResults());
+
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"GST_Reconciliation_Report_" + jobId + ".xlsx\"")
+                    .header("X-Run-Id", run.getRunId())
+                    .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
+                    .contentLength(reportBytes.length)
+                    .body(new ByteArrayResource(reportBytes));
+        } catch (IllegalArgumentException e) {
+            return error(HttpStatus.GONE, e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    private ResponseEntity<Map<String, Object>> error(HttpStatus status, String message) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("error", message);
+        return ResponseEntity.status(status).body(body);
+    }
+}
@@ -0,0 +1,75 @@
+package com.RK8.V2.DTO;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Value;
+
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+
+// CA action report over one run's results (ReconciliationReportService.generateActionReport)
+@Value
+public class ActionReport {
+    Summary summary;
+    Map<ReconciliationStatus, Long> statusBreakdown;
+    List<ActionItem> actionItems;
+    List<SupplierRow> supplierAnalysis;
+    List<MonthRow> monthlyAnalysis;
+    List<MissingInvoice> topMissingByValue;
+
+    @Value
+    public static class Summary {
+        long totalInvoices;
+        long matchedInvoices;
+        String complianceScore;
+        Money itcAvailable;
+        Money itcClaimed;
+        Money itcAtRisk;
+        Money itcUnclaimed;
+    }
+
+    // ADD_TO_PURCHASE_REGISTER items carry supplierGstin, invoiceMonth, taxAmount and reason;
+    // VERIFY_SUPPLIER_GSTIN items carry purchaseGstin, purchaseTax, gstr2bTax and remarks
+    @Value
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class ActionItem {
+        String action;
+        String priority;
+        String supplierGstin;
+        String purchaseGstin;
+        String invoiceNo;
+        YearMonth invoiceMonth;
+        Money taxAmount;
+        Money purchaseTax;
+        Money gstr2bTax;
+        String reason;
+        String remarks;
+    }
+
+    @Value
+    public static class SupplierRow {
+        String gstin;
+        long totalInvoices;
+        long matched;
+        long missingInPurchase;
+        Money totalTax;
+        Money itcAtRisk;
+    }
+
+    @Value
+    public static class MonthRow {
+        String month;
+        long totalInvoices;
+        Money totalTax;
+        Money itcClaimed;
+        Money itcAtRisk;
+    }
+
+    @Value
+    public static class MissingInvoice {
+        String supplierGstin;
+        String invoiceNo;
+        YearMonth invoiceMonth;
+        Money taxAmount;
+    }
+}
@@ -0,0 +1,19 @@
+package com.RK8.V2.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+
+// One reconciliation kept in memory so reports can be rendered again without re-uploading
+@Data
+@AllArgsConstructor
+public class CachedRun {
+    private String runId;
+    private List<PurchaseInvoiceDTO> purchases;
+    private List<Gstr2BDTO> gstr2bList;
+    private List<ReconciliationResult> results;
+    private List<StrategyStats> strategyStats;
+    private Instant createdAt;
+}
@@ -0,0 +1,20 @@
+package com.RK8.V2.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.Instant;
+
+// Snapshot of a background reconciliation job, as returned by the polling endpoint
+@Data
+@AllArgsConstructor
+public class JobStatus {
+    private String jobId;
+    private String phase;      // QUEUED, PARSING, MATCHING, CACHING, DONE, FAILED
+    private int progress;      // percent
+    private String runId;      // set once DONE
+    private String error;      // set when FAILED
+    private Instant submittedAt;
+    private Instant startedAt;
+    private Instant finishedAt;
+}
@@ -0,0 +1,16 @@
+package com.RK8.V2.DTO;
+
+// Facts about a matched pair that the status alone does not carry. A result holds them as a
+// bit set (ReconciliationResult.flags), one bit per ordinal.
+public enum MatchFlag {
+    // The matched 2B record is filed under a different supplier GSTIN
+    GSTIN_MISMATCH,
+    // The invoice numbers were matched despite being written differently
+    INVOICE_NO_DIFFERS,
+    // Tax amounts differ, but by no more than the tolerance
+    WITHIN_TOLERANCE;
+
+    public int bit() {
+        return 1 << ordinal();
+    }
+}
@@ -0,0 +1,19 @@
+package com.RK8.V2.DTO;
+
+import lombok.Value;
+
+// One non-matched result in the /detailed-report response
+@Value
+public class MismatchDetail {
+    String supplierGstin;
+    String invoiceNo;
+    String invoiceMonth;
+    ReconciliationStatus status;
+    Money purchaseTaxAmount;
+    Money gstr2bTaxAmount;
+    Money taxDifference;
+    Money itcAtRiskAmount;
+    String actionRequired;
+    String priority;
+    String remarks;
+}
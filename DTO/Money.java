@@ -0,0 +1,175 @@
+package com.RK8.V2.DTO;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// Immutable rupee amount stored as a whole number of paise.
+// Used for all tax arithmetic in parsing, matching and aggregation; it only turns into a
+// BigDecimal at the JSON/Excel boundary (toBigDecimal / doubleValue).
+public final class Money implements Comparable<Money> {
+    public static final Money ZERO = new Money(0);
+
+    private final long paise;
+
+    private Money(long paise) {
+        this.paise = paise;
+    }
+
+    public static Money ofPaise(long paise) {
+        return paise == 0 ? ZERO : new Money(paise);
+    }
+
+    public static Money ofRupees(long rupees) {
+        return ofPaise(Math.multiplyExact(rupees, 100L));
+    }
+
+    // Numeric cell values; amounts with up to two decimals take the fast path
+    public static Money ofRupees(double rupees) {
+        if (Double.isNaN(rupees) || Double.isInfinite(rupees)) return ZERO;
+        double scaled = rupees * 100;
+        long rounded = Math.round(scaled);
+        if (Math.abs(scaled - rounded) < 1e-6) {
+            return ofPaise(rounded);
+        }
+        return of(BigDecimal.valueOf(rupees));
+    }
+
+    @JsonCreator
+    public static Money of(BigDecimal rupees) {
+        if (rupees == null) return ZERO;
+        return ofPaise(rupees.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact());
+    }
+
+    // Parses "1234.5", "-12", "+0.255" straight to paise (HALF_UP); anything unusual goes
+    // through BigDecimal and unparsable text yields ZERO, like the old cell parsing did
+    public static Money parse(String text) {
+        if (text == null) return ZERO;
+        String s = text.trim();
+        int len = s.length();
+        if (len == 0) return ZERO;
+
+        int i = 0;
+        boolean negative = false;
+        char first = s.charAt(0);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            i++;
+        }
+
+        long rupees = 0;
+        long fraction = 0;
+        int fractionDigits = -1;
+        boolean roundUp = false;
+        boolean digits = false;
+
+        for (; i < len; i++) {
+            char ch = s.charAt(i);
+            if (ch >= '0' && ch <= '9') {
+                digits = true;
+                int d = ch - '0';
+                if (fractionDigits < 0) {
+                    if (rupees > (Long.MAX_VALUE / 100 - 9) / 10) return parseSlow(s);
+                    rupees = rupees * 10 + d;
+                } else {
+                    fractionDigits++;
+                    if (fractionDigits <= 2) {
+                        fraction = fraction * 10 + d;
+                    } else if (fractionDigits == 3) {
+                        roundUp = d >= 5;
+                    }
+                }
+            } else if (ch == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else {
+                return parseSlow(s);
+            }
+        }
+
+        if (!digits) return ZERO;
+        if (fractionDigits == 1) fraction *= 10;
+
+        long paise = rupees * 100 + fraction + (roundUp ? 1 : 0);
+        return ofPaise(negative ? -paise : paise);
+    }
+
+    private static Money parseSlow(String s) {
+        try {
+            return of(new BigDecimal(s));
+        } catch (NumberFormatException | ArithmeticException e) {
+            return ZERO;
+        }
+    }
+
+    public static Money sum(Money a, Money b, Money c) {
+        return ofPaise(paiseOf(a) + paiseOf(b) + paiseOf(c));
+    }
+
+    private static long paiseOf(Money m) {
+        return m == null ? 0 : m.paise;
+    }
+
+    public long getPaise() {
+        return paise;
+    }
+
+    public Money plus(Money other) {
+        return other == null || other.paise == 0 ? this : ofPaise(paise + other.paise);
+    }
+
+    public Money minus(Money other) {
+        return other == null || other.paise == 0 ? this : ofPaise(paise - other.paise);
+    }
+
+    public Money abs() {
+        return paise < 0 ? ofPaise(-paise) : this;
+    }
+
+    public Money max(Money other) {
+        return other != null && other.paise > paise ? other : this;
+    }
+
+    public boolean isZero() {
+        return paise == 0;
+    }
+
+    public int signum() {
+        return Long.signum(paise);
+    }
+
+    // |this - other| in paise, without allocating
+    public long distance(Money other) {
+        return Math.abs(paise - paiseOf(other));
+    }
+
+    @JsonValue
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(paise, 2);
+    }
+
+    public double doubleValue() {
+        return paise / 100.0;
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(paise, other.paise);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Money && ((Money) o).paise == paise;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(paise);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
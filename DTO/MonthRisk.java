@@ -0,0 +1,11 @@
+package com.RK8.V2.DTO;
+
+import lombok.Value;
+
+// Mismatch count and ITC at risk for one invoice month
+@Value
+public class MonthRisk {
+    String month;
+    int count;
+    Money totalRisk;
+}
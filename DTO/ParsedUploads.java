@@ -0,0 +1,16 @@
+package com.RK8.V2.DTO;
+
+import com.RK8.V2.Service.MatchContext;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class ParsedUploads {
+    private List<PurchaseInvoiceDTO> purchases;
+    private List<Gstr2BDTO> gstr2bList;
+    // The same 2B records, indexed for matching while they were parsed
+    private MatchContext gstr2bIndex;
+}
@@ -2,7 +2,6 @@ package com.RK8.V2.DTO;
 
 import lombok.Data;
 
-import java.math.BigDecimal;
 import java.time.LocalDate;
 
 @Data
@@ -12,12 +11,16 @@ public class PurchaseInvoiceDTO {
     private String invoiceNo;
     private LocalDate invoiceDate;
 
-    private BigDecimal igst = BigDecimal.ZERO;
-    private BigDecimal cgst = BigDecimal.ZERO;
-    private BigDecimal sgst = BigDecimal.ZERO;
+    private Money igst = Money.ZERO;
+    private Money cgst = Money.ZERO;
+    private Money sgst = Money.ZERO;
 
     private String particulars;
-    private BigDecimal grossTotal = BigDecimal.ZERO;
+    private Money grossTotal = Money.ZERO;
+
+    public Money getTotalTax() {
+        return Money.sum(igst, cgst, sgst);
+    }
 }
 
 
@@ -0,0 +1,13 @@
+package com.RK8.V2.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class ReconciliationOutcome {
+    private List<ReconciliationResult> results;
+    private List<StrategyStats> strategyStats;
+}
@@ -1,9 +1,9 @@
 package com.RK8.V2.DTO;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
-import java.math.BigDecimal;
 import java.time.YearMonth;
 
 @Data
@@ -11,12 +11,23 @@ import java.time.YearMonth;
 public class ReconciliationResult {
     private String supplierGstin;
     private String invoiceNo;
-    private String status;
-    private BigDecimal purchaseTax;
-    private BigDecimal gstr2bTax;
-    private BigDecimal itcAtRisk;
+    private ReconciliationStatus status;
+    private Money purchaseTax;
+    private Money gstr2bTax;
+    private Money itcAtRisk;
     private String remarks;
     private YearMonth invoiceMonth;
-}
+    // MatchFlag bits
+    @JsonIgnore
+    private int flags;
 
+    public ReconciliationResult(String supplierGstin, String invoiceNo, ReconciliationStatus status,
+                                Money purchaseTax, Money gstr2bTax, Money itcAtRisk, String remarks,
+                                YearMonth invoiceMonth) {
+        this(supplierGstin, invoiceNo, status, purchaseTax, gstr2bTax, itcAtRisk, remarks, invoiceMonth, 0);
+    }
 
+    public boolean has(MatchFlag flag) {
+        return (flags & flag.bit()) != 0;
+    }
+}
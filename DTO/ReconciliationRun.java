@@ -11,6 +11,9 @@ public class ReconciliationRun {
 
     private Long id;
 
+    // Run ID in the in-memory run cache, while it is still there
+    private String runId;
+
     private String clientGstin;
     private String period; // 2024-12
 
@@ -0,0 +1,22 @@
+package com.RK8.V2.DTO;
+
+// Outcome of one purchase line or unclaimed 2B record. Serialized by name, so the JSON and
+// Excel output carry the same strings as before.
+public enum ReconciliationStatus {
+    MATCHED(true),
+    MATCHED_WITH_TOLERANCE(true),
+    MISMATCH(false),
+    MISSING_IN_2B(false),
+    MISSING_IN_PURCHASE(false);
+
+    private final boolean matched;
+
+    ReconciliationStatus(boolean matched) {
+        this.matched = matched;
+    }
+
+    // MATCHED or MATCHED_WITH_TOLERANCE
+    public boolean isMatched() {
+        return matched;
+    }
+}
@@ -0,0 +1,19 @@
+package com.RK8.V2.DTO;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Value;
+
+// One row of the /upload detail lists. Columns left out by a fields projection are null and
+// not serialized.
+@Value
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ResultDetail {
+    String gstin;
+    String invoiceNo;
+    ReconciliationStatus status;
+    Money purchaseTax;
+    Money gstr2bTax;
+    Money itcAtRisk;
+    String remarks;
+    String invoiceMonth;
+}
@@ -0,0 +1,17 @@
+package com.RK8.V2.DTO;
+
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import lombok.Value;
+
+import java.util.List;
+
+// Action report of a cached run, with the run's counts alongside the report's own fields
+@Value
+public class RunReport {
+    String runId;
+    int purchaseInvoiceCount;
+    int gstr2bInvoiceCount;
+    List<StrategyStats> strategyStats;
+    @JsonUnwrapped
+    ActionReport report;
+}
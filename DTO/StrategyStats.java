@@ -0,0 +1,15 @@
+package com.RK8.V2.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class StrategyStats {
+    private String strategy;
+    private int order;
+    private long invocations;
+    private long candidates;
+    private long hits;
+    private long nanos;
+}
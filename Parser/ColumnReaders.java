@@ -0,0 +1,248 @@
+package com.RK8.V2.Parser;
+
+import com.RK8.V2.DTO.Money;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.Row;
+
+import java.math.BigDecimal;
+import java.text.ParsePosition;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+// Column decoders shared by the purchase and 2B parsers.
+// After header detection each logical column is resolved once to a decoder bound to its
+// column index, so the row loop does no map lookups and no per-cell formatter allocation.
+public final class ColumnReaders {
+
+    public static final DateTimeFormatter ISO_DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    public static final DateTimeFormatter DD_MM_YYYY_SLASH = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    public static final DateTimeFormatter DD_MM_YYYY_DASH = DateTimeFormatter.ofPattern("dd-MM-yyyy");
+    public static final DateTimeFormatter DD_MMM_YYYY = DateTimeFormatter.ofPattern("dd-MMM-yyyy");
+    public static final DateTimeFormatter D_M_YYYY_SLASH = DateTimeFormatter.ofPattern("d/M/yyyy");
+    public static final DateTimeFormatter D_M_YYYY_DASH = DateTimeFormatter.ofPattern("d-M-yyyy");
+    public static final DateTimeFormatter YYYY_MM_DD_SLASH = DateTimeFormatter.ofPattern("yyyy/MM/dd");
+
+    private ColumnReaders() {
+    }
+
+    public static TextColumn text(Integer index) {
+        return new TextColumn(index);
+    }
+
+    public static AmountColumn amount(Integer index) {
+        return new AmountColumn(index);
+    }
+
+    public static DateColumn date(Integer index, String label, DateTimeFormatter... candidates) {
+        return new DateColumn(index, label, candidates);
+    }
+
+    // Base for all decoders; a null index means the column is absent from this sheet
+    public abstract static class Column {
+        protected final int index;
+
+        Column(Integer index) {
+            this.index = index == null ? -1 : index;
+        }
+
+        public boolean isPresent() {
+            return index >= 0;
+        }
+
+        protected Cell cell(Row row) {
+            return index < 0 ? null : row.getCell(index);
+        }
+
+        protected String value(List<String> values) {
+            return index < 0 || index >= values.size() ? "" : values.get(index);
+        }
+    }
+
+    public static class TextColumn extends Column {
+        TextColumn(Integer index) {
+            super(index);
+        }
+
+        public String read(Row row) {
+            return cellText(cell(row));
+        }
+
+        public String read(List<String> values) {
+            return value(values);
+        }
+    }
+
+    public static class AmountColumn extends Column {
+        AmountColumn(Integer index) {
+            super(index);
+        }
+
+        // Decodes straight to paise - no intermediate BigDecimal per cell
+        public Money read(Row row) {
+            Cell c = cell(row);
+            if (c == null) return Money.ZERO;
+
+            try {
+                switch (c.getCellType()) {
+                    case NUMERIC:
+                        return Money.ofRupees(c.getNumericCellValue());
+                    case STRING:
+                        return Money.parse(c.getStringCellValue());
+                    case FORMULA:
+                        if (c.getCachedFormulaResultType() == CellType.NUMERIC) {
+                            return Money.ofRupees(c.getNumericCellValue());
+                        }
+                        return Money.parse(c.getStringCellValue());
+                    default:
+                        return Money.ZERO;
+                }
+            } catch (Exception e) {
+                return Money.ZERO;
+            }
+        }
+
+        public Money read(List<String> values) {
+            return Money.parse(value(values));
+        }
+    }
+
+    // Detects the sheet's date pattern from the first parsable text cell and reuses it;
+    // the full candidate list is only tried again when the detected pattern fails.
+    public static class DateColumn extends Column {
+        private final String label;
+        private final DateTimeFormatter[] candidates;
+        private DateTimeFormatter detected;
+
+        DateColumn(Integer index, String label, DateTimeFormatter[] candidates) {
+            super(index);
+            this.label = label;
+            this.candidates = candidates;
+        }
+
+        public LocalDate read(Row row) {
+            Cell c = cell(row);
+            if (c == null) return null;
+
+            try {
+                // Excel date cells need no text parsing at all
+                if (c.getCellType() == CellType.NUMERIC && DateUtil.isCellDateFormatted(c)) {
+                    return c.getLocalDateTimeCellValue().toLocalDate();
+                }
+                return parse(cellText(c));
+            } catch (Exception e) {
+                System.err.println("Error parsing " + label + ": " + e.getMessage());
+                return null;
+            }
+        }
+
+        public LocalDate read(List<String> values) {
+            return parse(value(values));
+        }
+
+        private LocalDate parse(String value) {
+            String dateStr = value == null ? "" : value.trim();
+            if (dateStr.isEmpty()) return null;
+
+            // Remove time part if present (for "2025-09-01 00:00:00")
+            int space = dateStr.indexOf(' ');
+            if (space > 0) {
+                dateStr = dateStr.substring(0, space);
+            }
+
+            if (detected != null) {
+                LocalDate d = tryParse(dateStr, detected);
+                if (d != null) return d;
+            }
+
+            for (DateTimeFormatter fmt : candidates) {
+                if (fmt == detected) continue;
+                LocalDate d = tryParse(dateStr, fmt);
+                if (d != null) {
+                    if (detected == null) detected = fmt;
+                    return d;
+                }
+            }
+
+            System.err.println("Could not parse " + label + ": " + dateStr);
+            return null;
+        }
+
+        // Pre-checks with parseUnresolved so a non-matching pattern costs no exception
+        private static LocalDate tryParse(String s, DateTimeFormatter fmt) {
+            ParsePosition pos = new ParsePosition(0);
+            if (fmt.parseUnresolved(s, pos) == null || pos.getErrorIndex() >= 0 || pos.getIndex() != s.length()) {
+                return null;
+            }
+            try {
+                return LocalDate.parse(s, fmt);
+            } catch (Exception e) {
+                return null;
+            }
+        }
+    }
+
+    public static String cellText(Cell c) {
+        if (c == null) return "";
+
+        switch (c.getCellType()) {
+            case STRING:
+                return c.getStringCellValue().trim();
+            case NUMERIC:
+                if (DateUtil.isCellDateFormatted(c)) {
+                    return c.getDateCellValue().toString();
+                }
+                return BigDecimal.valueOf(c.getNumericCellValue())
+                        .stripTrailingZeros().toPlainString();
+            case BOOLEAN:
+                return String.valueOf(c.getBooleanCellValue());
+            case FORMULA:
+                try {
+                    return c.getStringCellValue();
+                } catch (Exception e) {
+                    try {
+                        return String.valueOf(c.getNumericCellValue());
+                    } catch (Exception ex) {
+                        return "";
+                    }
+                }
+            default:
+                return "";
+        }
+    }
+
+    // True when the cell holds the given text label (e.g. "Total"), without formatting numbers
+    public static boolean isLabel(Cell c, String label) {
+        if (c == null) return false;
+        CellType type = c.getCellType();
+        if (type != CellType.STRING && type != CellType.FORMULA) return false;
+        return label.equalsIgnoreCase(cellText(c).trim());
+    }
+
+    public static boolean isEmptyRow(Row row) {
+        if (row == null) return true;
+        for (Cell c : row) {
+            switch (c.getCellType()) {
+                case NUMERIC:
+                case BOOLEAN:
+                    return false;
+                case STRING:
+                case FORMULA:
+                    if (!cellText(c).trim().isEmpty()) return false;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return true;
+    }
+
+    public static boolean isEmptyRow(List<String> values) {
+        for (String v : values) {
+            if (!v.isEmpty()) return false;
+        }
+        return true;
+    }
+}
@@ -1,16 +1,16 @@
 package com.RK8.V2.Parser;
 
 import com.RK8.V2.DTO.Gstr2BDTO;
+import com.RK8.V2.DTO.Money;
 import org.apache.poi.ss.usermodel.*;
 import java.io.InputStream;
-import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
 import org.springframework.stereotype.Component;
-import java.time.ZoneId;
 import java.util.*;
+import java.util.function.Consumer;
 
 @Component
 public class Gstr2BExcelParser {
@@ -24,89 +24,116 @@ public class Gstr2BExcelParser {
     private static final String INVOICE_VALUE = "INVOICE_VALUE";
     private static final String PARTICULARS = "PARTICULARS";
 
-    public List<Gstr2BDTO> parse(InputStream is) throws Exception {
+    // Candidate date patterns in order of preference
+    private static final DateTimeFormatter[] DATE_FORMATS = {
+            ColumnReaders.DD_MM_YYYY_SLASH,
+            ColumnReaders.DD_MM_YYYY_DASH,
+            ColumnReaders.ISO_DATE,
+            ColumnReaders.DD_MMM_YYYY,
+            ColumnReaders.D_M_YYYY_SLASH,
+            ColumnReaders.D_M_YYYY_DASH
+    };
+
+    private final InvoiceNormalizer invoiceNormalizer;
+
+    public Gstr2BExcelParser(InvoiceNormalizer invoiceNormalizer) {
+        this.invoiceNormalizer = invoiceNormalizer;
+    }
+
+    // Hands each row to the sink as soon as it is decoded
+    public void parse(InputStream is, Consumer<Gstr2BDTO> sink) throws Exception {
         try (Workbook wb = WorkbookFactory.create(is)) {
             Sheet sheet = wb.getSheetAt(0);
             int headerRow = findHeaderRow(sheet);
             Row header = sheet.getRow(headerRow);
             Map<String, Integer> col = buildColumnMap(header);
             validate(col);
+            CompiledColumns cols = new CompiledColumns(col);
 
-            List<Gstr2BDTO> out = new ArrayList<>();
+            int loaded = 0;
             for (int i = headerRow + 1; i <= sheet.getLastRowNum(); i++) {
                 Row r = sheet.getRow(i);
-                if (r == null || isEmptyRow(r)) continue;
+                if (ColumnReaders.isEmptyRow(r)) continue;
 
                 // Check for total row
-                Cell firstCell = r.getCell(0);
-                if (firstCell != null && "Total".equalsIgnoreCase(getStringValue(firstCell).trim())) {
+                if (ColumnReaders.isLabel(r.getCell(0), "Total")) {
                     continue;
                 }
 
-                String invoice = getStringValue(r.getCell(col.get(INVOICE_NO)));
-                if (invoice == null || invoice.trim().isEmpty() || invoice.equalsIgnoreCase("Total")) {
+                String invoice = cols.invoiceNo.read(r);
+                if (invoice.trim().isEmpty() || invoice.equalsIgnoreCase("Total")) {
                     continue;
                 }
 
-                // Parse all values
-                String supplierGstin = getStringValue(r.getCell(col.get(SUPPLIER_GSTIN)));
-                LocalDate invoiceDate = parseDate(r.getCell(col.get(INVOICE_DATE)));
+                LocalDate invoiceDate = cols.invoiceDate.read(r);
+                if (invoiceDate == null) {
+                    System.err.println("Skipping 2B row due to invalid date: " + invoice);
+                    continue;
+                }
 
                 // IMPORTANT: Don't skip zero tax rows! Include ALL invoices
-                BigDecimal igst = parseBigDecimal(r.getCell(col.get(IGST)));
-                BigDecimal cgst = parseBigDecimal(r.getCell(col.get(CGST)));
-                BigDecimal sgst = parseBigDecimal(r.getCell(col.get(SGST)));
+                Money igst = cols.igst.read(r);
+                Money cgst = cols.cgst.read(r);
+                Money sgst = cols.sgst.read(r);
 
                 Gstr2BDTO d = new Gstr2BDTO();
-                d.setInvoiceNo(normalizeInvoice(invoice));
-                d.setSupplierGstin(normalizeGstin(supplierGstin));
+                d.setInvoiceNo(invoiceNormalizer.normalizeInvoice(invoice));
+                d.setSupplierGstin(invoiceNormalizer.normalizeGstin(cols.supplierGstin.read(r)));
                 d.setInvoiceDate(invoiceDate);
                 d.setIgst(igst);
                 d.setCgst(cgst);
                 d.setSgst(sgst);
 
                 // Get taxable value if available
-                Integer taxableValueIdx = col.get(TAXABLE_VALUE);
-                if (taxableValueIdx != null) {
-                    d.setTaxableValue(parseBigDecimal(r.getCell(taxableValueIdx)));
+                if (cols.taxableValue.isPresent()) {
+                    d.setTaxableValue(cols.taxableValue.read(r));
                 }
 
                 // Get invoice value if available
-                Integer invoiceValueIdx = col.get(INVOICE_VALUE);
-                if (invoiceValueIdx != null) {
-                    d.setInvoiceValue(parseBigDecimal(r.getCell(invoiceValueIdx)));
+                if (cols.invoiceValue.isPresent()) {
+                    d.setInvoiceValue(cols.invoiceValue.read(r));
                 } else {
                     // Calculate from taxable value + taxes
-                    BigDecimal taxable = d.getTaxableValue() != null ? d.getTaxableValue() : BigDecimal.ZERO;
-                    BigDecimal totalTax = igst.add(cgst).add(sgst);
-                    d.setInvoiceValue(taxable.add(totalTax));
+                    Money taxable = d.getTaxableValue() != null ? d.getTaxableValue() : Money.ZERO;
+                    d.setInvoiceValue(taxable.plus(d.getTotalTax()));
                 }
 
                 // Get particulars/legal name
-                Integer particularsIdx = col.get(PARTICULARS);
-                if (particularsIdx != null) {
-                    d.setLegalName(getStringValue(r.getCell(particularsIdx)));
+                if (cols.particulars.isPresent()) {
+                    d.setLegalName(cols.particulars.read(r));
                 }
 
-                out.add(d);
+                sink.accept(d);
+                loaded++;
             }
 
-            System.out.println("GSTR-2B Parser: Loaded " + out.size() + " invoices");
-            return out;
+            System.out.println("GSTR-2B Parser: Loaded " + loaded + " invoices");
         }
     }
 
-    private boolean isEmptyRow(Row r) {
-        if (r == null) return true;
-        for (Cell c : r) {
-            if (c != null && c.getCellType() != CellType.BLANK) {
-                String val = getStringValue(c).trim();
-                if (!val.isEmpty()) {
-                    return false;
-                }
-            }
+    // Decoders for this sheet's columns, resolved once after header detection
+    private static class CompiledColumns {
+        final ColumnReaders.TextColumn invoiceNo;
+        final ColumnReaders.TextColumn supplierGstin;
+        final ColumnReaders.DateColumn invoiceDate;
+        final ColumnReaders.AmountColumn igst;
+        final ColumnReaders.AmountColumn cgst;
+        final ColumnReaders.AmountColumn sgst;
+        final ColumnReaders.AmountColumn taxableValue;
+        final ColumnReaders.AmountColumn invoiceValue;
+        final ColumnReaders.TextColumn particulars;
+
+        CompiledColumns(Map<String, Integer> col) {
+            invoiceNo = ColumnReaders.text(col.get(INVOICE_NO));
+            supplierGstin = ColumnReaders.text(col.get(SUPPLIER_GSTIN));
+            invoiceDate = ColumnReaders.date(col.get(INVOICE_DATE), "date", DATE_FORMATS);
+            igst = ColumnReaders.amount(col.get(IGST));
+            cgst = ColumnReaders.amount(col.get(CGST));
+            sgst = ColumnReaders.amount(col.get(SGST));
+            taxableValue = ColumnReaders.amount(col.get(TAXABLE_VALUE));
+            invoiceValue = ColumnReaders.amount(col.get(INVOICE_VALUE));
+            particulars = ColumnReaders.text(col.get(PARTICULARS));
         }
-        return true;
     }
 
     private int findHeaderRow(Sheet s) {
@@ -116,7 +143,7 @@ public class Gstr2BExcelParser {
 
             int hit = 0;
             for (Cell c : r) {
-                String v = getStringValue(c).toUpperCase();
+                String v = ColumnReaders.cellText(c).toUpperCase();
                 if (v.contains("INVOICE") && v.contains("NO")) hit++;
                 if (v.contains("SUPPLIER") && v.contains("GST")) hit++;
                 if (v.contains("INVOICE") && v.contains("DATE")) hit++;
@@ -132,7 +159,7 @@ public class Gstr2BExcelParser {
     private Map<String, Integer> buildColumnMap(Row h) {
         Map<String, Integer> m = new HashMap<>();
         for (Cell c : h) {
-            String v = getStringValue(c).toUpperCase().trim();
+            String v = ColumnReaders.cellText(c).toUpperCase().trim();
 
             if (v.contains("INVOICE") && v.contains("NO")) {
                 m.put(INVOICE_NO, c.getColumnIndex());
@@ -182,155 +209,4 @@ public class Gstr2BExcelParser {
             }
         }
     }
-
-    private String getStringValue(Cell c) {
-        if (c == null) return "";
-
-        switch (c.getCellType()) {
-            case STRING:
-                return c.getStringCellValue().trim();
-            case NUMERIC:
-                if (DateUtil.isCellDateFormatted(c)) {
-                    return c.getDateCellValue().toString();
-                }
-                return BigDecimal.valueOf(c.getNumericCellValue())
-                        .stripTrailingZeros().toPlainString();
-            case BOOLEAN:
-                return String.valueOf(c.getBooleanCellValue());
-            case FORMULA:
-                try {
-                    return c.getStringCellValue();
-                } catch (Exception e) {
-                    try {
-                        return String.valueOf(c.getNumericCellValue());
-                    } catch (Exception ex) {
-                        return "";
-                    }
-                }
-            default:
-                return "";
-        }
-    }
-
-    private BigDecimal parseBigDecimal(Cell c) {
-        try {
-            if (c == null) return BigDecimal.ZERO;
-
-            switch (c.getCellType()) {
-                case NUMERIC:
-                    return BigDecimal.valueOf(c.getNumericCellValue());
-                case STRING:
-                    String val = c.getStringCellValue().trim();
-                    if (val.isEmpty()) return BigDecimal.ZERO;
-                    return new BigDecimal(val);
-                case FORMULA:
-                    try {
-                        return BigDecimal.valueOf(c.getNumericCellValue());
-                    } catch (Exception e) {
-                        String val2 = c.getStringCellValue().trim();
-                        if (val2.isEmpty()) return BigDecimal.ZERO;
-                        return new BigDecimal(val2);
-                    }
-                default:
-                    return BigDecimal.ZERO;
-            }
-        } catch (Exception e) {
-            return BigDecimal.ZERO;
-        }
-    }
-
-    private LocalDate parseDate(Cell c) {
-        if (c == null) return null;
-
-        try {
-            // Try Excel date format first
-            if (c.getCellType() == CellType.NUMERIC && DateUtil.isCellDateFormatted(c)) {
-                return c.getDateCellValue().toInstant()
-                        .atZone(ZoneId.systemDefault())
-                        .toLocalDate();
-            }
-
-            // Try string parsing
-            String dateStr = getStringValue(c).trim();
-            if (dateStr.isEmpty()) return null;
-
-            // Remove time part if present
-            if (dateStr.contains(" ")) {
-                dateStr = dateStr.split(" ")[0];
-            }
-
-            // Try different date formats
-            DateTimeFormatter[] formatters = {
-                    DateTimeFormatter.ofPattern("dd/MM/yyyy"),
-                    DateTimeFormatter.ofPattern("dd-MM-yyyy"),
-                    DateTimeFormatter.ofPattern("yyyy-MM-dd"),
-                    DateTimeFormatter.ofPattern("dd-MMM-yyyy"),
-                    DateTimeFormatter.ofPattern("d/M/yyyy"),
-                    DateTimeFormatter.ofPattern("d-M-yyyy")
-            };
-
-            for (DateTimeFormatter fmt : formatters) {
-                try {
-                    return LocalDate.parse(dateStr, fmt);
-                } catch (Exception ignored) {}
-            }
-
-            System.err.println("Could not parse date: " + dateStr);
-            return null;
-
-        } catch (Exception e) {
-            System.err.println("Error parsing date: " + e.getMessage());
-            return null;
-        }
-    }
-
-    private String normalizeGstin(String g) {
-        if (g == null || g.trim().isEmpty()) return "";
-        return g.trim().toUpperCase().replaceAll("[^A-Z0-9]", "");
-    }
-
-    // Add this method to both parsers
-    private String extractNumericInvoice(String invoice) {
-        if (invoice == null) return "";
-
-        // Extract the last sequence of digits
-        String normalized = invoice.replaceAll("[^0-9]", " ");
-        String[] parts = normalized.trim().split("\\s+");
-
-        if (parts.length > 0) {
-            // Return the last numeric part (usually the invoice number)
-            return parts[parts.length - 1];
-        }
-
-        return "";
-    }
-
-    // Update the normalizeInvoice method
-    private String normalizeInvoice(String i) {
-        if (i == null) return "";
-
-        String base = i.trim().toUpperCase();
-
-        // Common pattern fixes
-        base = base.replace("FY25-26/", "")
-                .replace("GST-25-26/", "")
-                .replace("EP/2025-26/", "")
-                .replace("JE/2025-26/", "")
-                .replace("TIA/T/", "")
-                .replace("/24-25", "")
-                .replace("/25-26", "")
-                .replaceAll("\\s+", "");
-
-        // Character normalization (O/0, I/1, etc.)
-        base = base.replace('O', '0')
-                .replace('I', '1')
-                .replace('L', '1');
-
-        return base;
-    }
 }
-
-
-
-
-
@@ -0,0 +1,49 @@
+package com.RK8.V2.Parser;
+
+import com.RK8.V2.DTO.Gstr2BDTO;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+// Entry point for GSTR-2B uploads: accepts either the portal JSON or an Excel export
+@Component
+public class Gstr2BFileParser {
+    private static final int SNIFF_BYTES = 64;
+
+    private final Gstr2BExcelParser excelParser;
+    private final Gstr2BJsonParser jsonParser;
+
+    public Gstr2BFileParser(Gstr2BExcelParser excelParser, Gstr2BJsonParser jsonParser) {
+        this.excelParser = excelParser;
+        this.jsonParser = jsonParser;
+    }
+
+    // Streams records to the sink as they are read, e.g. straight into a MatchContext
+    public void parse(InputStream is, Consumer<Gstr2BDTO> sink) throws Exception {
+        InputStream in = is.markSupported() ? is : new BufferedInputStream(is);
+        if (looksLikeJson(in)) {
+            jsonParser.parse(in, sink);
+        } else {
+            excelParser.parse(in, sink);
+        }
+    }
+
+    // Excel files start with a zip/OLE2 signature, JSON with '{' after optional BOM/whitespace
+    private boolean looksLikeJson(InputStream in) throws Exception {
+        in.mark(SNIFF_BYTES);
+        try {
+            for (int i = 0; i < SNIFF_BYTES; i++) {
+                int b = in.read();
+                if (b == -1) return false;
+                if (b == ' ' || b == '\t' || b == '\r' || b == '\n') continue;
+                if (b == 0xEF || b == 0xBB || b == 0xBF) continue; // UTF-8 BOM
+                return b == '{' || b == '[';
+            }
+            return false;
+        } finally {
+            in.reset();
+        }
+    }
+}
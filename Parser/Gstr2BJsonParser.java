@@ -0,0 +1,233 @@
+package com.RK8.V2.Parser;
+
+import com.RK8.V2.DTO.Gstr2BDTO;
+import com.RK8.V2.DTO.Money;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Reads the GSTR-2B JSON downloaded from the GST portal (data.docdata.b2b[].inv[])
+// with the streaming JsonParser, so no tree model of the whole return is built.
+@Component
+public class Gstr2BJsonParser {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final DateTimeFormatter PORTAL_DATE = DateTimeFormatter.ofPattern("dd-MM-yyyy");
+
+    private final InvoiceNormalizer invoiceNormalizer;
+
+    public Gstr2BJsonParser(InvoiceNormalizer invoiceNormalizer) {
+        this.invoiceNormalizer = invoiceNormalizer;
+    }
+
+    // Hands each invoice to the sink once its supplier object is closed
+    public void parse(InputStream is, Consumer<Gstr2BDTO> sink) throws Exception {
+        int[] loaded = {0};
+        Consumer<Gstr2BDTO> out = d -> {
+            sink.accept(d);
+            loaded[0]++;
+        };
+        boolean docdataFound = false;
+
+        try (JsonParser p = JSON_FACTORY.createParser(is)) {
+            JsonToken t;
+            while ((t = p.nextToken()) != null) {
+                if (t == JsonToken.FIELD_NAME && "docdata".equals(p.getCurrentName())) {
+                    if (p.nextToken() == JsonToken.START_OBJECT) {
+                        docdataFound = true;
+                        parseDocdata(p, out);
+                    }
+                }
+            }
+        }
+
+        if (!docdataFound) {
+            throw new RuntimeException("2B JSON has no docdata section");
+        }
+
+        System.out.println("GSTR-2B JSON Parser: Loaded " + loaded[0] + " invoices");
+    }
+
+    private void parseDocdata(JsonParser p, Consumer<Gstr2BDTO> out) throws Exception {
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String section = p.getCurrentName();
+            JsonToken value = p.nextToken();
+            if ("b2b".equals(section) && value == JsonToken.START_ARRAY) {
+                while (p.nextToken() == JsonToken.START_OBJECT) {
+                    parseSupplier(p, out);
+                }
+            } else {
+                // b2ba, cdnr, impg ... are not reconciled against the purchase register
+                p.skipChildren();
+            }
+        }
+    }
+
+    private void parseSupplier(JsonParser p, Consumer<Gstr2BDTO> out) throws Exception {
+        String ctin = null;
+        String tradeName = null;
+        // ctin is not guaranteed to come before inv, so fill it in once the object is closed
+        List<Gstr2BDTO> invoices = new ArrayList<>();
+
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.getCurrentName();
+            JsonToken value = p.nextToken();
+            switch (field) {
+                case "ctin":
+                    ctin = p.getValueAsString();
+                    break;
+                case "trdnm":
+                    tradeName = p.getValueAsString();
+                    break;
+                case "inv":
+                    if (value == JsonToken.START_ARRAY) {
+                        while (p.nextToken() == JsonToken.START_OBJECT) {
+                            Gstr2BDTO d = parseInvoice(p);
+                            if (d != null) invoices.add(d);
+                        }
+                    } else {
+                        p.skipChildren();
+                    }
+                    break;
+                default:
+                    p.skipChildren();
+            }
+        }
+
+        String gstin = invoiceNormalizer.normalizeGstin(ctin);
+        for (Gstr2BDTO d : invoices) {
+            d.setSupplierGstin(gstin);
+            d.setLegalName(tradeName);
+            out.accept(d);
+        }
+    }
+
+    private Gstr2BDTO parseInvoice(JsonParser p) throws Exception {
+        String inum = null;
+        LocalDate date = null;
+        Money val = null;
+        Money txval = null;
+        Money igst = null;
+        Money cgst = null;
+        Money sgst = null;
+        // Item-level sums in paise, used when the invoice itself does not carry the totals
+        long[] itemTotals = new long[4];
+
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.getCurrentName();
+            JsonToken value = p.nextToken();
+            switch (field) {
+                case "inum":
+                    inum = p.getValueAsString();
+                    break;
+                case "dt":
+                    date = parseDate(p.getValueAsString());
+                    break;
+                case "val":
+                    val = readAmount(p, value);
+                    break;
+                case "txval":
+                    txval = readAmount(p, value);
+                    break;
+                case "igst":
+                    igst = readAmount(p, value);
+                    break;
+                case "cgst":
+                    cgst = readAmount(p, value);
+                    break;
+                case "sgst":
+                    sgst = readAmount(p, value);
+                    break;
+                case "items":
+                    if (value == JsonToken.START_ARRAY) {
+                        while (p.nextToken() == JsonToken.START_OBJECT) {
+                            addItem(p, itemTotals);
+                        }
+                    } else {
+                        p.skipChildren();
+                    }
+                    break;
+                default:
+                    p.skipChildren();
+            }
+        }
+
+        if (inum == null || inum.trim().isEmpty()) {
+            return null;
+        }
+        // Matching windows and the monthly rollup need a date, as for purchase rows
+        if (date == null) {
+            System.err.println("Skipping 2B invoice due to missing or invalid date: " + inum);
+            return null;
+        }
+
+        Gstr2BDTO d = new Gstr2BDTO();
+        d.setInvoiceNo(invoiceNormalizer.normalizeInvoice(inum));
+        d.setInvoiceDate(date);
+        d.setTaxableValue(txval != null ? txval : Money.ofPaise(itemTotals[0]));
+        d.setIgst(igst != null ? igst : Money.ofPaise(itemTotals[1]));
+        d.setCgst(cgst != null ? cgst : Money.ofPaise(itemTotals[2]));
+        d.setSgst(sgst != null ? sgst : Money.ofPaise(itemTotals[3]));
+
+        if (val != null) {
+            d.setInvoiceValue(val);
+        } else {
+            // Calculate from taxable value + taxes
+            d.setInvoiceValue(d.getTaxableValue().plus(d.getTotalTax()));
+        }
+        return d;
+    }
+
+    private void addItem(JsonParser p, long[] totals) throws Exception {
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.getCurrentName();
+            JsonToken value = p.nextToken();
+            switch (field) {
+                case "txval":
+                    totals[0] += readAmount(p, value).getPaise();
+                    break;
+                case "igst":
+                    totals[1] += readAmount(p, value).getPaise();
+                    break;
+                case "cgst":
+                    totals[2] += readAmount(p, value).getPaise();
+                    break;
+                case "sgst":
+                    totals[3] += readAmount(p, value).getPaise();
+                    break;
+                default:
+                    p.skipChildren();
+            }
+        }
+    }
+
+    // Numbers are decoded from their text straight to paise
+    private Money readAmount(JsonParser p, JsonToken value) throws Exception {
+        if (value == JsonToken.VALUE_NUMBER_INT && p.getNumberType() == JsonParser.NumberType.INT) {
+            return Money.ofRupees((long) p.getIntValue());
+        }
+        if (value == JsonToken.VALUE_NUMBER_INT || value == JsonToken.VALUE_NUMBER_FLOAT
+                || value == JsonToken.VALUE_STRING) {
+            return Money.parse(p.getText());
+        }
+        p.skipChildren();
+        return Money.ZERO;
+    }
+
+    private LocalDate parseDate(String s) {
+        if (s == null || s.trim().isEmpty()) return null;
+        try {
+            return LocalDate.parse(s.trim(), PORTAL_DATE);
+        } catch (Exception e) {
+            System.err.println("Could not parse 2B JSON date: " + s);
+            return null;
+        }
+    }
+}
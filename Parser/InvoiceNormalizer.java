@@ -0,0 +1,305 @@
+package com.RK8.V2.Parser;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Single place for invoice-number and GSTIN normalization, shared by the parsers and the
+// reconciliation engine. The FY prefixes/suffixes to strip ("FY25-26/", "/24-25", ...) are
+// configurable and compiled into one Aho-Corasick automaton, so stripping, whitespace removal,
+// upper-casing and O/0, I/1, L/1 folding all happen in a single pass over a char[].
+@Component
+public class InvoiceNormalizer {
+    public static final List<String> DEFAULT_STRIP_PATTERNS = List.of(
+            "FY25-26/", "GST-25-26/", "EP/2025-26/", "JE/2025-26/", "TIA/T/", "/24-25", "/25-26");
+
+    // Automaton alphabet: ASCII only, any other char sends the automaton back to the root
+    private static final int ALPHABET = 128;
+    // Bump whenever a normalization rule changes what an invoice number or GSTIN becomes
+    private static final int VERSION = 1;
+
+    private final List<String> patterns;
+    private final Automaton anywhere;
+    private final Automaton reversed;
+
+    @Autowired
+    public InvoiceNormalizer(@Value("${reconcile.invoice.strip-patterns:}") String stripPatterns) {
+        this(parsePatterns(stripPatterns));
+    }
+
+    public InvoiceNormalizer(List<String> stripPatterns) {
+        List<String> patterns = new ArrayList<>();
+        List<String> reversedPatterns = new ArrayList<>();
+        for (String p : stripPatterns) {
+            String up = p.trim().toUpperCase();
+            if (up.isEmpty()) continue;
+            patterns.add(up);
+            reversedPatterns.add(new StringBuilder(up).reverse().toString());
+        }
+        this.patterns = patterns;
+        this.anywhere = new Automaton(patterns);
+        this.reversed = new Automaton(reversedPatterns);
+    }
+
+    private static List<String> parsePatterns(String csv) {
+        if (csv == null || csv.trim().isEmpty()) return DEFAULT_STRIP_PATTERNS;
+        return Arrays.asList(csv.split(","));
+    }
+
+    // Rules version plus the strip patterns in effect; equal fingerprints normalize alike
+    public String fingerprint() {
+        return VERSION + ":" + String.join(",", patterns);
+    }
+
+    // Parser-side normalization: upper-case, strip configured patterns anywhere,
+    // drop whitespace and fold O->0, I->1, L->1
+    public String normalizeInvoice(String raw) {
+        if (raw == null) return "";
+
+        int len = raw.length();
+        char[] out = new char[len];
+        int n = 0;
+        int state = 0;
+
+        for (int i = 0; i < len; i++) {
+            char c = Character.toUpperCase(raw.charAt(i));
+            if (c <= ' ') {
+                // Whitespace breaks a pattern match but is not copied
+                state = 0;
+                continue;
+            }
+
+            state = anywhere.step(state, c);
+            out[n++] = fold(c);
+
+            int matched = anywhere.matchLength[state];
+            if (matched > 0) {
+                n -= matched;
+                state = 0;
+            }
+        }
+        return new String(out, 0, n);
+    }
+
+    public String normalizeGstin(String g) {
+        if (g == null) return "";
+        int len = g.length();
+        char[] out = new char[len];
+        int n = 0;
+        for (int i = 0; i < len; i++) {
+            char c = Character.toUpperCase(g.charAt(i));
+            if ((c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) {
+                out[n++] = c;
+            }
+        }
+        return new String(out, 0, n);
+    }
+
+    // Engine-side key: upper-case without whitespace (idempotent on parser output)
+    public String cleanInvoice(String invoice) {
+        if (invoice == null) return "";
+        int len = invoice.length();
+        char[] out = new char[len];
+        int n = 0;
+        for (int i = 0; i < len; i++) {
+            char c = Character.toUpperCase(invoice.charAt(i));
+            if (c > ' ') out[n++] = c;
+        }
+        return new String(out, 0, n);
+    }
+
+    public String foldInvoice(String invoice) {
+        char[] out = invoice.toCharArray();
+        for (int i = 0; i < out.length; i++) {
+            out[i] = fold(out[i]);
+        }
+        return new String(out);
+    }
+
+    // Strips one leading and any trailing configured patterns (longest match first)
+    public String baseInvoice(String invoice) {
+        int start = anywhere.longestPrefix(invoice, 0, invoice.length());
+        int end = invoice.length();
+        while (end > start) {
+            int suffix = reversed.longestSuffix(invoice, start, end);
+            if (suffix == 0) break;
+            end -= suffix;
+        }
+        return start == 0 && end == invoice.length() ? invoice : invoice.substring(start, end);
+    }
+
+    // Digits only, "0" when there are none
+    public String numericInvoice(String invoice) {
+        int len = invoice.length();
+        char[] out = new char[len];
+        int n = 0;
+        for (int i = 0; i < len; i++) {
+            char c = invoice.charAt(i);
+            if (c >= '0' && c <= '9') out[n++] = c;
+        }
+        return n == 0 ? "0" : new String(out, 0, n);
+    }
+
+    private static char fold(char c) {
+        switch (c) {
+            case 'O':
+                return '0';
+            case 'I':
+            case 'L':
+                return '1';
+            default:
+                return c;
+        }
+    }
+
+    // Per-run memo of the engine-side forms, so each invoice is cleaned, folded,
+    // base-stripped and reduced to digits exactly once per reconciliation.
+    // Safe to share between the partition tasks of a parallel run.
+    public Memo newMemo() {
+        return new Memo();
+    }
+
+    public class Memo {
+        private final ConcurrentHashMap<String, InvoiceForms> forms = new ConcurrentHashMap<>();
+
+        public InvoiceForms forms(String invoice) {
+            String key = invoice == null ? "" : invoice;
+            InvoiceForms f = forms.get(key);
+            if (f == null) {
+                String clean = cleanInvoice(key);
+                f = new InvoiceForms(clean, foldInvoice(clean), baseInvoice(clean), numericInvoice(key));
+                InvoiceForms raced = forms.putIfAbsent(key, f);
+                if (raced != null) f = raced;
+            }
+            return f;
+        }
+    }
+
+    public static final class InvoiceForms {
+        public final String clean;
+        public final String folded;
+        public final String base;
+        public final String numeric;
+
+        InvoiceForms(String clean, String folded, String base, String numeric) {
+            this.clean = clean;
+            this.folded = folded;
+            this.base = base;
+            this.numeric = numeric;
+        }
+    }
+
+    // Aho-Corasick automaton compiled to a full transition table
+    private static final class Automaton {
+        private final int[][] next;
+        private final int[] depth;
+        private final boolean[] terminal;
+        // Longest pattern ending at this state (own or via failure links), 0 if none
+        private final int[] matchLength;
+
+        Automaton(List<String> patterns) {
+            List<int[]> trie = new ArrayList<>();
+            List<Integer> depths = new ArrayList<>();
+            List<Boolean> terminals = new ArrayList<>();
+            trie.add(newRow());
+            depths.add(0);
+            terminals.add(false);
+
+            for (String p : patterns) {
+                int s = 0;
+                for (int i = 0; i < p.length(); i++) {
+                    char c = p.charAt(i);
+                    if (c >= ALPHABET) {
+                        s = -1;
+                        break;
+                    }
+                    if (trie.get(s)[c] < 0) {
+                        trie.get(s)[c] = trie.size();
+                        trie.add(newRow());
+                        depths.add(i + 1);
+                        terminals.add(false);
+                    }
+                    s = trie.get(s)[c];
+                }
+                if (s > 0) terminals.set(s, true);
+            }
+
+            int size = trie.size();
+            next = trie.toArray(new int[0][]);
+            depth = new int[size];
+            terminal = new boolean[size];
+            matchLength = new int[size];
+            for (int i = 0; i < size; i++) {
+                depth[i] = depths.get(i);
+                terminal[i] = terminals.get(i);
+            }
+
+            // BFS to fill failure transitions into the table
+            int[] fail = new int[size];
+            int[] queue = new int[size];
+            int head = 0;
+            int tail = 0;
+            for (int c = 0; c < ALPHABET; c++) {
+                int child = next[0][c];
+                if (child < 0) {
+                    next[0][c] = 0;
+                } else {
+                    fail[child] = 0;
+                    queue[tail++] = child;
+                }
+            }
+            while (head < tail) {
+                int s = queue[head++];
+                matchLength[s] = terminal[s] ? depth[s] : matchLength[fail[s]];
+                for (int c = 0; c < ALPHABET; c++) {
+                    int child = next[s][c];
+                    if (child < 0) {
+                        next[s][c] = next[fail[s]][c];
+                    } else {
+                        fail[child] = next[fail[s]][c];
+                        queue[tail++] = child;
+                    }
+                }
+            }
+        }
+
+        private static int[] newRow() {
+            int[] row = new int[ALPHABET];
+            Arrays.fill(row, -1);
+            return row;
+        }
+
+        int step(int state, char c) {
+            return c < ALPHABET ? next[state][c] : 0;
+        }
+
+        // Length of the longest pattern that s[from..to) starts with, following trie edges only
+        int longestPrefix(String s, int from, int to) {
+            int state = 0;
+            int best = 0;
+            for (int i = from; i < to; i++) {
+                state = step(state, s.charAt(i));
+                if (depth[state] != i - from + 1) break;
+                if (terminal[state]) best = depth[state];
+            }
+            return best;
+        }
+
+        // Same walk from the end backwards; this automaton holds the reversed patterns
+        int longestSuffix(String s, int from, int to) {
+            int state = 0;
+            int best = 0;
+            for (int i = to - 1; i >= from; i--) {
+                state = step(state, s.charAt(i));
+                if (depth[state] != to - i) break;
+                if (terminal[state]) best = depth[state];
+            }
+            return best;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.RK8.V2.Parser;
+
+import com.RK8.V2.DTO.Gstr2BDTO;
+import com.RK8.V2.DTO.Money;
+import com.RK8.V2.DTO.PurchaseInvoiceDTO;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Compact binary form of parsed purchase / GSTR-2B rows, so an upload that was parsed once can
+// be reloaded without going through POI or Jackson again. Layout:
+//   header   magic, version, kind, record count, dictionary size (5 ints)
+//   records  fixed width: strings as dictionary ids, amounts as paise, dates as epoch days
+//   strings  dictionary, each entry a length-prefixed UTF-8 string
+// GSTINs, invoice numbers and names repeat a lot, so each distinct string is stored once and
+// every reloaded row shares the same String instance. Files are read through a memory map.
+public final class InvoiceSnapshotCodec {
+    private static final int MAGIC = 0x524B3853; // "RK8S"
+    public static final int VERSION = 1;
+    private static final int KIND_PURCHASE = 1;
+    private static final int KIND_GSTR2B = 2;
+    private static final int HEADER_BYTES = 5 * Integer.BYTES;
+
+    // gstin, invoice, date, particulars (ints) + igst, cgst, sgst, grossTotal (longs)
+    private static final int PURCHASE_BYTES = 4 * Integer.BYTES + 4 * Long.BYTES;
+    // gstin, invoice, date, legalName (ints) + taxable, value, igst, cgst, sgst (longs)
+    private static final int GSTR2B_BYTES = 4 * Integer.BYTES + 5 * Long.BYTES;
+
+    // Both record kinds start with gstin, invoice, date and a name / particulars id
+    private static final int[] STRING_FIELDS = {0, Integer.BYTES, 3 * Integer.BYTES};
+    private static final int DATE_FIELD = 2 * Integer.BYTES;
+    // Dates the parsers can produce: four-digit years
+    private static final long MIN_EPOCH_DAY = LocalDate.of(1, 1, 1).toEpochDay();
+    private static final long MAX_EPOCH_DAY = LocalDate.of(9999, 12, 31).toEpochDay();
+
+    private static final int NULL_STRING = -1;
+    private static final int NULL_DATE = Integer.MIN_VALUE;
+    private static final long NULL_MONEY = Long.MIN_VALUE;
+
+    private InvoiceSnapshotCodec() {
+    }
+
+    public static void writePurchases(Path file, List<PurchaseInvoiceDTO> purchases) throws IOException {
+        Dictionary dict = new Dictionary();
+        try (DataOutputStream out = open(file)) {
+            writeHeader(out, KIND_PURCHASE, purchases.size());
+            for (PurchaseInvoiceDTO p : purchases) {
+                out.writeInt(dict.id(p.getSupplierGstin()));
+                out.writeInt(dict.id(p.getInvoiceNo()));
+                out.writeInt(epochDay(p.getInvoiceDate()));
+                out.writeInt(dict.id(p.getParticulars()));
+                out.writeLong(paise(p.getIgst()));
+                out.writeLong(paise(p.getCgst()));
+                out.writeLong(paise(p.getSgst()));
+                out.writeLong(paise(p.getGrossTotal()));
+            }
+            dict.writeTo(out);
+        }
+        patchDictionarySize(file, dict.size());
+    }
+
+    public static void writeGstr2b(Path file, List<Gstr2BDTO> records) throws IOException {
+        Dictionary dict = new Dictionary();
+        try (DataOutputStream out = open(file)) {
+            writeHeader(out, KIND_GSTR2B, records.size());
+            for (Gstr2BDTO g : records) {
+                out.writeInt(dict.id(g.getSupplierGstin()));
+                out.writeInt(dict.id(g.getInvoiceNo()));
+                out.writeInt(epochDay(g.getInvoiceDate()));
+                out.writeInt(dict.id(g.getLegalName()));
+                out.writeLong(paise(g.getTaxableValue()));
+                out.writeLong(paise(g.getInvoiceValue()));
+                out.writeLong(paise(g.getIgst()));
+                out.writeLong(paise(g.getCgst()));
+                out.writeLong(paise(g.getSgst()));
+            }
+            dict.writeTo(out);
+        }
+        patchDictionarySize(file, dict.size());
+    }
+
+    public static List<PurchaseInvoiceDTO> readPurchases(Path file) throws IOException {
+        ByteBuffer buf = map(file);
+        int count = readHeader(buf, KIND_PURCHASE, PURCHASE_BYTES, file);
+        String[] strings = readDictionary(buf, HEADER_BYTES + (long) count * PURCHASE_BYTES, file);
+        checkRecords(buf, count, PURCHASE_BYTES, strings.length, file);
+
+        List<PurchaseInvoiceDTO> purchases = new ArrayList<>(count);
+        buf.position(HEADER_BYTES);
+        for (int i = 0; i < count; i++) {
+            PurchaseInvoiceDTO p = new PurchaseInvoiceDTO();
+            p.setSupplierGstin(string(strings, buf.getInt()));
+            p.setInvoiceNo(string(strings, buf.getInt()));
+            p.setInvoiceDate(date(buf.getInt()));
+            p.setParticulars(string(strings, buf.getInt()));
+            p.setIgst(money(buf.getLong()));
+            p.setCgst(money(buf.getLong()));
+            p.setSgst(money(buf.getLong()));
+            p.setGrossTotal(money(buf.getLong()));
+            purchases.add(p);
+        }
+        return purchases;
+    }
+
+    // Hands each record to the sink in file order, like the 2B parsers do
+    public static void readGstr2b(Path file, Consumer<Gstr2BDTO> sink) throws IOException {
+        ByteBuffer buf = map(file);
+        int count = readHeader(buf, KIND_GSTR2B, GSTR2B_BYTES, file);
+        String[] strings = readDictionary(buf, HEADER_BYTES + (long) count * GSTR2B_BYTES, file);
+        checkRecords(buf, count, GSTR2B_BYTES, strings.length, file);
+
+        buf.position(HEADER_BYTES);
+        for (int i = 0; i < count; i++) {
+            Gstr2BDTO g = new Gstr2BDTO();
+            g.setSupplierGstin(string(strings, buf.getInt()));
+            g.setInvoiceNo(string(strings, buf.getInt()));
+            g.setInvoiceDate(date(buf.getInt()));
+            g.setLegalName(string(strings, buf.getInt()));
+            g.setTaxableValue(money(buf.getLong()));
+            g.setInvoiceValue(money(buf.getLong()));
+            g.setIgst(money(buf.getLong()));
+            g.setCgst(money(buf.getLong()));
+            g.setSgst(money(buf.getLong()));
+            sink.accept(g);
+        }
+    }
+
+    private static DataOutputStream open(Path file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+    }
+
+    private static void writeHeader(DataOutputStream out, int kind, int count) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(kind);
+        out.writeInt(count);
+        // Dictionary size is only known once the records are written; patched afterwards
+        out.writeInt(0);
+    }
+
+    private static void patchDictionarySize(Path file, int size) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(Integer.BYTES).putInt(0, size);
+            ch.write(b, HEADER_BYTES - Integer.BYTES);
+        }
+    }
+
+    private static ByteBuffer map(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot too large to map: " + file);
+            }
+            // The mapping stays valid after the channel is closed
+            return ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    private static int readHeader(ByteBuffer buf, int kind, int recordBytes, Path file) throws IOException {
+        if (buf.limit() < HEADER_BYTES || buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION
+                || buf.getInt(8) != kind) {
+            throw new IOException("Not a snapshot of the expected kind: " + file);
+        }
+        int count = buf.getInt(12);
+        if (count < 0 || HEADER_BYTES + (long) count * recordBytes > buf.limit()) {
+            throw new IOException("Truncated snapshot: " + file);
+        }
+        return count;
+    }
+
+    private static String[] readDictionary(ByteBuffer buf, long offset, Path file) throws IOException {
+        int size = buf.getInt(16);
+        String[] strings = new String[Math.max(size, 0)];
+        byte[] scratch = new byte[256];
+        try {
+            buf.position((int) offset);
+            for (int i = 0; i < strings.length; i++) {
+                int len = buf.getInt();
+                if (len > scratch.length) scratch = new byte[Math.max(len, scratch.length * 2)];
+                buf.get(scratch, 0, len);
+                strings[i] = new String(scratch, 0, len, StandardCharsets.UTF_8);
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt snapshot dictionary: " + file, e);
+        }
+        return strings;
+    }
+
+    // Every record's dictionary ids and date, checked before the first record is decoded so a
+    // corrupt snapshot fails as a whole, with an IOException, and never half-way through the sink
+    private static void checkRecords(ByteBuffer buf, int count, int recordBytes, int dictionarySize, Path file)
+            throws IOException {
+        for (int i = 0; i < count; i++) {
+            int at = HEADER_BYTES + i * recordBytes;
+            boolean valid = true;
+            for (int field : STRING_FIELDS) {
+                int id = buf.getInt(at + field);
+                valid &= id == NULL_STRING || (id >= 0 && id < dictionarySize);
+            }
+            int epochDay = buf.getInt(at + DATE_FIELD);
+            valid &= epochDay == NULL_DATE || (epochDay >= MIN_EPOCH_DAY && epochDay <= MAX_EPOCH_DAY);
+            if (!valid) {
+                throw new IOException("Corrupt snapshot record " + i + ": " + file);
+            }
+        }
+    }
+
+    private static String string(String[] strings, int id) {
+        return id == NULL_STRING ? null : strings[id];
+    }
+
+    private static int epochDay(LocalDate date) {
+        return date == null ? NULL_DATE : (int) date.toEpochDay();
+    }
+
+    private static LocalDate date(int epochDay) {
+        return epochDay == NULL_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    private static long paise(Money money) {
+        return money == null ? NULL_MONEY : money.getPaise();
+    }
+
+    private static Money money(long paise) {
+        return paise == NULL_MONEY ? null : Money.ofPaise(paise);
+    }
+
+    // Distinct strings in first-seen order
+    private static final class Dictionary {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+
+        int id(String s) {
+            if (s == null) return NULL_STRING;
+            Integer id = ids.get(s);
+            if (id == null) {
+                id = strings.size();
+                ids.put(s, id);
+                strings.add(s);
+            }
+            return id;
+        }
+
+        int size() {
+            return strings.size();
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            for (String s : strings) {
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+    }
+}
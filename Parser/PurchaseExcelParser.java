@@ -1,16 +1,19 @@
 package com.RK8.V2.Parser;
 
 import com.RK8.V2.DTO.PurchaseInvoiceDTO;
+import org.apache.poi.poifs.filesystem.FileMagic;
 import org.apache.poi.ss.usermodel.*;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.InputStream;
-import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
 import org.springframework.stereotype.Component;
-import java.time.ZoneId;
 import java.util.*;
+import java.util.function.Consumer;
 
 @Component
 public class PurchaseExcelParser {
@@ -23,7 +26,54 @@ public class PurchaseExcelParser {
     private static final String PARTICULARS = "PARTICULARS";
     private static final String GROSS_TOTAL = "GROSS_TOTAL";
 
+    // .xlsx uploads at or above this size are parsed with the streaming (SAX) reader
+    private static final long STREAMING_THRESHOLD_BYTES = 5L * 1024 * 1024;
 
+    // Candidate date patterns in order of preference
+    private static final DateTimeFormatter[] DATE_FORMATS = {
+            ColumnReaders.ISO_DATE,
+            ColumnReaders.DD_MM_YYYY_SLASH,
+            ColumnReaders.DD_MM_YYYY_DASH,
+            ColumnReaders.DD_MMM_YYYY,
+            ColumnReaders.YYYY_MM_DD_SLASH
+    };
+
+    private final InvoiceNormalizer invoiceNormalizer;
+
+    public PurchaseExcelParser(InvoiceNormalizer invoiceNormalizer) {
+        this.invoiceNormalizer = invoiceNormalizer;
+    }
+
+    public List<PurchaseInvoiceDTO> parse(InputStream is, long sizeBytes) throws Exception {
+        if (sizeBytes < STREAMING_THRESHOLD_BYTES) {
+            return parse(is);
+        }
+
+        InputStream in = is.markSupported() ? is : new BufferedInputStream(is);
+        if (FileMagic.valueOf(in) != FileMagic.OOXML) {
+            // Old .xls files have no event-model reader here, use the workbook path
+            return parse(in);
+        }
+
+        List<PurchaseInvoiceDTO> list = new ArrayList<>();
+        parseStreaming(in, list::add);
+        return list;
+    }
+
+    // Same, for an upload already on disk: the streaming reader opens the file itself instead
+    // of spooling a copy
+    public List<PurchaseInvoiceDTO> parse(File file) throws Exception {
+        if (file.length() >= STREAMING_THRESHOLD_BYTES && FileMagic.valueOf(file) == FileMagic.OOXML) {
+            List<PurchaseInvoiceDTO> list = new ArrayList<>();
+            StreamingRowHandler handler = new StreamingRowHandler(list::add);
+            XlsxRowReader.read(file, handler);
+            finishStreaming(handler);
+            return list;
+        }
+        try (InputStream is = new FileInputStream(file)) {
+            return parse(is);
+        }
+    }
 
     public List<PurchaseInvoiceDTO> parse(InputStream is) throws Exception {
         try (Workbook workbook = WorkbookFactory.create(is)) {
@@ -32,50 +82,40 @@ public class PurchaseExcelParser {
             Row headerRow = sheet.getRow(headerRowIndex);
             Map<String, Integer> colIndex = buildColumnIndexMap(headerRow);
             validateColumns(colIndex);
+            CompiledColumns cols = new CompiledColumns(colIndex);
 
             List<PurchaseInvoiceDTO> list = new ArrayList<>();
             for (int i = headerRowIndex + 1; i <= sheet.getLastRowNum(); i++) {
                 Row row = sheet.getRow(i);
-                if (row == null || isEmptyRow(row)) continue;
+                if (ColumnReaders.isEmptyRow(row)) continue;
 
                 // Check for total row
-                Cell firstCell = row.getCell(0);
-                if (firstCell != null && "Grand Total".equalsIgnoreCase(getStringValue(firstCell).trim())) {
+                if (ColumnReaders.isLabel(row.getCell(0), "Grand Total")) {
                     continue;
                 }
 
-                String rawInvoice = getStringValue(row.getCell(colIndex.get(INVOICE_NO)));
-                if (rawInvoice == null || rawInvoice.trim().isEmpty() ||
-                        rawInvoice.equalsIgnoreCase("Grand Total")) {
+                String rawInvoice = cols.invoiceNo.read(row);
+                if (rawInvoice.trim().isEmpty() || rawInvoice.equalsIgnoreCase("Grand Total")) {
                     continue;
                 }
 
-                // IMPORTANT: Don't skip zero tax rows
-                BigDecimal igst = parseBigDecimal(row.getCell(colIndex.get(IGST)));
-                BigDecimal cgst = parseBigDecimal(row.getCell(colIndex.get(CGST)));
-                BigDecimal sgst = parseBigDecimal(row.getCell(colIndex.get(SGST)));
-
-                PurchaseInvoiceDTO dto = new PurchaseInvoiceDTO();
-                dto.setInvoiceNo(normalizeInvoice(rawInvoice));
-                dto.setSupplierGstin(normalizeGstin(
-                        getStringValue(row.getCell(colIndex.get(SUPPLIER_GSTIN)))
-                ));
-
-                LocalDate invoiceDate = parseDate(row.getCell(colIndex.get(INVOICE_DATE)));
+                LocalDate invoiceDate = cols.invoiceDate.read(row);
                 if (invoiceDate == null) {
                     System.err.println("Skipping row due to invalid date: " + rawInvoice);
                     continue;
                 }
-                dto.setInvoiceDate(invoiceDate);
-
-                dto.setIgst(igst);
-                dto.setCgst(cgst);
-                dto.setSgst(sgst);
-                dto.setParticulars(getStringValue(row.getCell(colIndex.get(PARTICULARS))));
 
-                Integer grossTotalIdx = colIndex.get(GROSS_TOTAL);
-                if (grossTotalIdx != null) {
-                    dto.setGrossTotal(parseBigDecimal(row.getCell(grossTotalIdx)));
+                // IMPORTANT: Don't skip zero tax rows
+                PurchaseInvoiceDTO dto = new PurchaseInvoiceDTO();
+                dto.setInvoiceNo(invoiceNormalizer.normalizeInvoice(rawInvoice));
+                dto.setSupplierGstin(invoiceNormalizer.normalizeGstin(cols.supplierGstin.read(row)));
+                dto.setInvoiceDate(invoiceDate);
+                dto.setIgst(cols.igst.read(row));
+                dto.setCgst(cols.cgst.read(row));
+                dto.setSgst(cols.sgst.read(row));
+                dto.setParticulars(cols.particulars.read(row));
+                if (cols.grossTotal.isPresent()) {
+                    dto.setGrossTotal(cols.grossTotal.read(row));
                 }
 
                 list.add(dto);
@@ -86,17 +126,100 @@ public class PurchaseExcelParser {
         }
     }
 
-    private boolean isEmptyRow(Row row) {
-        if (row == null) return true;
-        for (Cell cell : row) {
-            if (cell != null && cell.getCellType() != CellType.BLANK) {
-                String val = getStringValue(cell).trim();
-                if (!val.isEmpty()) {
-                    return false;
+    // Emits invoices row-by-row without building the Workbook DOM (.xlsx only)
+    public void parseStreaming(InputStream is, Consumer<PurchaseInvoiceDTO> sink) throws Exception {
+        StreamingRowHandler handler = new StreamingRowHandler(sink);
+        XlsxRowReader.read(is, handler);
+        finishStreaming(handler);
+    }
+
+    private void finishStreaming(StreamingRowHandler handler) {
+        if (handler.cols == null) {
+            throw new RuntimeException("Purchase header row not found");
+        }
+        System.out.println("Purchase Parser (streaming): Loaded " + handler.count + " invoices");
+    }
+
+    private class StreamingRowHandler implements XlsxRowReader.RowHandler {
+        private final Consumer<PurchaseInvoiceDTO> sink;
+        private CompiledColumns cols;
+        private int count;
+
+        StreamingRowHandler(Consumer<PurchaseInvoiceDTO> sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public void row(int rowNum, List<String> values) {
+            if (cols == null) {
+                if (rowNum > 20) {
+                    throw new RuntimeException("Purchase header row not found");
                 }
+                if (isHeaderRow(values)) {
+                    System.out.println("Found Purchase header at row: " + rowNum);
+                    Map<String, Integer> colIndex = buildColumnIndexMap(values);
+                    validateColumns(colIndex);
+                    cols = new CompiledColumns(colIndex);
+                }
+                return;
+            }
+
+            if (ColumnReaders.isEmptyRow(values)) return;
+
+            // Check for total row
+            if (!values.isEmpty() && "Grand Total".equalsIgnoreCase(values.get(0))) {
+                return;
+            }
+
+            String rawInvoice = cols.invoiceNo.read(values);
+            if (rawInvoice.isEmpty() || rawInvoice.equalsIgnoreCase("Grand Total")) {
+                return;
+            }
+
+            LocalDate invoiceDate = cols.invoiceDate.read(values);
+            if (invoiceDate == null) {
+                System.err.println("Skipping row due to invalid date: " + rawInvoice);
+                return;
+            }
+
+            PurchaseInvoiceDTO dto = new PurchaseInvoiceDTO();
+            dto.setInvoiceNo(invoiceNormalizer.normalizeInvoice(rawInvoice));
+            dto.setSupplierGstin(invoiceNormalizer.normalizeGstin(cols.supplierGstin.read(values)));
+            dto.setInvoiceDate(invoiceDate);
+            dto.setIgst(cols.igst.read(values));
+            dto.setCgst(cols.cgst.read(values));
+            dto.setSgst(cols.sgst.read(values));
+            dto.setParticulars(cols.particulars.read(values));
+            if (cols.grossTotal.isPresent()) {
+                dto.setGrossTotal(cols.grossTotal.read(values));
             }
+
+            sink.accept(dto);
+            count++;
+        }
+    }
+
+    // Decoders for this sheet's columns, resolved once after header detection
+    private static class CompiledColumns {
+        final ColumnReaders.TextColumn invoiceNo;
+        final ColumnReaders.TextColumn supplierGstin;
+        final ColumnReaders.DateColumn invoiceDate;
+        final ColumnReaders.AmountColumn igst;
+        final ColumnReaders.AmountColumn cgst;
+        final ColumnReaders.AmountColumn sgst;
+        final ColumnReaders.TextColumn particulars;
+        final ColumnReaders.AmountColumn grossTotal;
+
+        CompiledColumns(Map<String, Integer> colIndex) {
+            invoiceNo = ColumnReaders.text(colIndex.get(INVOICE_NO));
+            supplierGstin = ColumnReaders.text(colIndex.get(SUPPLIER_GSTIN));
+            invoiceDate = ColumnReaders.date(colIndex.get(INVOICE_DATE), "purchase date", DATE_FORMATS);
+            igst = ColumnReaders.amount(colIndex.get(IGST));
+            cgst = ColumnReaders.amount(colIndex.get(CGST));
+            sgst = ColumnReaders.amount(colIndex.get(SGST));
+            particulars = ColumnReaders.text(colIndex.get(PARTICULARS));
+            grossTotal = ColumnReaders.amount(colIndex.get(GROSS_TOTAL));
         }
-        return true;
     }
 
     private int findHeaderRow(Sheet sheet) {
@@ -106,10 +229,7 @@ public class PurchaseExcelParser {
 
             int hits = 0;
             for (Cell cell : row) {
-                String v = getStringValue(cell).toUpperCase();
-                if (v.contains("INVOICE") && v.contains("NO")) hits++;
-                if (v.contains("SUPPLIER") && v.contains("GST")) hits++;
-                if (v.contains("INVOICE") && v.contains("DATE")) hits++;
+                hits += countHeaderHits(ColumnReaders.cellText(cell));
             }
             if (hits >= 2) {
                 System.out.println("Found Purchase header at row: " + i);
@@ -119,202 +239,82 @@ public class PurchaseExcelParser {
         throw new RuntimeException("Purchase header row not found");
     }
 
+    private boolean isHeaderRow(List<String> values) {
+        int hits = 0;
+        for (String v : values) {
+            hits += countHeaderHits(v);
+        }
+        return hits >= 2;
+    }
+
+    private int countHeaderHits(String value) {
+        String v = value.toUpperCase();
+        int hits = 0;
+        if (v.contains("INVOICE") && v.contains("NO")) hits++;
+        if (v.contains("SUPPLIER") && v.contains("GST")) hits++;
+        if (v.contains("INVOICE") && v.contains("DATE")) hits++;
+        return hits;
+    }
+
     private Map<String, Integer> buildColumnIndexMap(Row headerRow) {
         Map<String, Integer> map = new HashMap<>();
         for (Cell cell : headerRow) {
-            String h = getStringValue(cell).toUpperCase().trim();
-
-            if (h.contains("INVOICE") && h.contains("NO")) {
-                map.put(INVOICE_NO, cell.getColumnIndex());
-                System.out.println("Purchase - Found INVOICE_NO at column: " + cell.getColumnIndex());
-            }
-            if (h.contains("SUPPLIER") && h.contains("GST")) {
-                map.put(SUPPLIER_GSTIN, cell.getColumnIndex());
-                System.out.println("Purchase - Found SUPPLIER_GSTIN at column: " + cell.getColumnIndex());
-            }
-            if (h.contains("INVOICE") && h.contains("DATE")) {
-                map.put(INVOICE_DATE, cell.getColumnIndex());
-                System.out.println("Purchase - Found INVOICE_DATE at column: " + cell.getColumnIndex());
-            }
-            if (h.contains("IGST")) {
-                map.put(IGST, cell.getColumnIndex());
-                System.out.println("Purchase - Found IGST at column: " + cell.getColumnIndex());
-            }
-            if (h.contains("CGST")) {
-                map.put(CGST, cell.getColumnIndex());
-                System.out.println("Purchase - Found CGST at column: " + cell.getColumnIndex());
-            }
-            if (h.contains("SGST")) {
-                map.put(SGST, cell.getColumnIndex());
-                System.out.println("Purchase - Found SGST at column: " + cell.getColumnIndex());
-            }
-            if (h.contains("PARTICULAR") || h.contains("NAME")) {
-                map.put(PARTICULARS, cell.getColumnIndex());
-                System.out.println("Purchase - Found PARTICULARS at column: " + cell.getColumnIndex());
-            }
-            if (h.contains("GROSS") || h.contains("TOTAL")) {
-                map.put(GROSS_TOTAL, cell.getColumnIndex());
-                System.out.println("Purchase - Found GROSS_TOTAL at column: " + cell.getColumnIndex());
-            }
+            mapHeaderCell(map, ColumnReaders.cellText(cell), cell.getColumnIndex());
         }
         return map;
     }
 
-    private void validateColumns(Map<String, Integer> colIndex) {
-        String[] required = {INVOICE_NO, SUPPLIER_GSTIN, INVOICE_DATE, IGST, CGST, SGST};
-        for (String col : required) {
-            if (!colIndex.containsKey(col)) {
-                throw new RuntimeException("Missing required column in purchase file: " + col);
-            }
+    private Map<String, Integer> buildColumnIndexMap(List<String> headerValues) {
+        Map<String, Integer> map = new HashMap<>();
+        for (int i = 0; i < headerValues.size(); i++) {
+            mapHeaderCell(map, headerValues.get(i), i);
         }
+        return map;
     }
 
-    private String getStringValue(Cell cell) {
-        if (cell == null) return "";
+    private void mapHeaderCell(Map<String, Integer> map, String value, int column) {
+        String h = value.toUpperCase().trim();
 
-        switch (cell.getCellType()) {
-            case STRING:
-                return cell.getStringCellValue().trim();
-            case NUMERIC:
-                if (DateUtil.isCellDateFormatted(cell)) {
-                    return cell.getDateCellValue().toString();
-                }
-                return BigDecimal.valueOf(cell.getNumericCellValue())
-                        .stripTrailingZeros().toPlainString();
-            case BOOLEAN:
-                return String.valueOf(cell.getBooleanCellValue());
-            case FORMULA:
-                try {
-                    return cell.getStringCellValue();
-                } catch (Exception e) {
-                    try {
-                        return String.valueOf(cell.getNumericCellValue());
-                    } catch (Exception ex) {
-                        return "";
-                    }
-                }
-            default:
-                return "";
+        if (h.contains("INVOICE") && h.contains("NO")) {
+            map.put(INVOICE_NO, column);
+            System.out.println("Purchase - Found INVOICE_NO at column: " + column);
         }
-    }
-
-    private BigDecimal parseBigDecimal(Cell cell) {
-        try {
-            if (cell == null) return BigDecimal.ZERO;
-
-            switch (cell.getCellType()) {
-                case NUMERIC:
-                    return BigDecimal.valueOf(cell.getNumericCellValue());
-                case STRING:
-                    String val = cell.getStringCellValue().trim();
-                    if (val.isEmpty()) return BigDecimal.ZERO;
-                    return new BigDecimal(val);
-                case FORMULA:
-                    try {
-                        return BigDecimal.valueOf(cell.getNumericCellValue());
-                    } catch (Exception e) {
-                        String val2 = cell.getStringCellValue().trim();
-                        if (val2.isEmpty()) return BigDecimal.ZERO;
-                        return new BigDecimal(val2);
-                    }
-                default:
-                    return BigDecimal.ZERO;
-            }
-        } catch (Exception e) {
-            return BigDecimal.ZERO;
+        if (h.contains("SUPPLIER") && h.contains("GST")) {
+            map.put(SUPPLIER_GSTIN, column);
+            System.out.println("Purchase - Found SUPPLIER_GSTIN at column: " + column);
         }
-    }
-
-    private LocalDate parseDate(Cell cell) {
-        if (cell == null) return null;
-
-        try {
-            // Try Excel date format first
-            if (cell.getCellType() == CellType.NUMERIC && DateUtil.isCellDateFormatted(cell)) {
-                return cell.getDateCellValue().toInstant()
-                        .atZone(ZoneId.systemDefault())
-                        .toLocalDate();
-            }
-
-            // Try string parsing
-            String dateStr = getStringValue(cell).trim();
-            if (dateStr.isEmpty()) return null;
-
-            // Remove time part if present (for "2025-09-01 00:00:00")
-            if (dateStr.contains(" ")) {
-                dateStr = dateStr.split(" ")[0];
-            }
-
-            // Try different date formats
-            DateTimeFormatter[] formatters = {
-                    DateTimeFormatter.ofPattern("yyyy-MM-dd"),
-                    DateTimeFormatter.ofPattern("dd/MM/yyyy"),
-                    DateTimeFormatter.ofPattern("dd-MM-yyyy"),
-                    DateTimeFormatter.ofPattern("dd-MMM-yyyy"),
-                    DateTimeFormatter.ofPattern("yyyy/MM/dd")
-            };
-
-            for (DateTimeFormatter fmt : formatters) {
-                try {
-                    return LocalDate.parse(dateStr, fmt);
-                } catch (Exception ignored) {}
-            }
-
-            System.err.println("Could not parse purchase date: " + dateStr);
-            return null;
-
-        } catch (Exception e) {
-            System.err.println("Error parsing purchase date: " + e.getMessage());
-            return null;
+        if (h.contains("INVOICE") && h.contains("DATE")) {
+            map.put(INVOICE_DATE, column);
+            System.out.println("Purchase - Found INVOICE_DATE at column: " + column);
         }
-    }
-
-    private String normalizeGstin(String g) {
-        if (g == null || g.trim().isEmpty()) return "";
-        return g.trim().toUpperCase().replaceAll("[^A-Z0-9]", "");
-    }
-
-    // Add this method to both parsers
-    private String extractNumericInvoice(String invoice) {
-        if (invoice == null) return "";
-
-        // Extract the last sequence of digits
-        String normalized = invoice.replaceAll("[^0-9]", " ");
-        String[] parts = normalized.trim().split("\\s+");
-
-        if (parts.length > 0) {
-            // Return the last numeric part (usually the invoice number)
-            return parts[parts.length - 1];
+        if (h.contains("IGST")) {
+            map.put(IGST, column);
+            System.out.println("Purchase - Found IGST at column: " + column);
+        }
+        if (h.contains("CGST")) {
+            map.put(CGST, column);
+            System.out.println("Purchase - Found CGST at column: " + column);
+        }
+        if (h.contains("SGST")) {
+            map.put(SGST, column);
+            System.out.println("Purchase - Found SGST at column: " + column);
+        }
+        if (h.contains("PARTICULAR") || h.contains("NAME")) {
+            map.put(PARTICULARS, column);
+            System.out.println("Purchase - Found PARTICULARS at column: " + column);
+        }
+        if (h.contains("GROSS") || h.contains("TOTAL")) {
+            map.put(GROSS_TOTAL, column);
+            System.out.println("Purchase - Found GROSS_TOTAL at column: " + column);
         }
-
-        return "";
     }
 
-    // Update the normalizeInvoice method
-    private String normalizeInvoice(String i) {
-        if (i == null) return "";
-
-        String base = i.trim().toUpperCase();
-
-        // Common pattern fixes
-        base = base.replace("FY25-26/", "")
-                .replace("GST-25-26/", "")
-                .replace("EP/2025-26/", "")
-                .replace("JE/2025-26/", "")
-                .replace("TIA/T/", "")
-                .replace("/24-25", "")
-                .replace("/25-26", "")
-                .replaceAll("\\s+", "");
-
-        // Character normalization (O/0, I/1, etc.)
-        base = base.replace('O', '0')
-                .replace('I', '1')
-                .replace('L', '1');
-
-        return base;
+    private void validateColumns(Map<String, Integer> colIndex) {
+        String[] required = {INVOICE_NO, SUPPLIER_GSTIN, INVOICE_DATE, IGST, CGST, SGST};
+        for (String col : required) {
+            if (!colIndex.containsKey(col)) {
+                throw new RuntimeException("Missing required column in purchase file: " + col);
+            }
+        }
     }
 }
-
-
-
-
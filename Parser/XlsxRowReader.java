@@ -0,0 +1,125 @@
+package com.RK8.V2.Parser;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import java.io.File;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// Event-model (SAX) reader for the first sheet of an .xlsx file.
+// Rows are pushed to the handler one at a time so memory stays flat for large sheets.
+// Numeric cells come through as plain numbers, date-formatted cells as yyyy-MM-dd.
+public class XlsxRowReader {
+
+    public interface RowHandler {
+        // The values list is reused between rows - copy it if you need to keep it
+        void row(int rowNum, List<String> values);
+    }
+
+    // Opened from a file, the package's zip entries are read on demand; opened from a stream,
+    // POI would inflate every entry (sheet XML included) into the heap
+    public static void read(File file, RowHandler handler) throws Exception {
+        OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ);
+        try {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            StylesTable styles = reader.getStylesTable();
+
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            if (!sheets.hasNext()) {
+                throw new RuntimeException("Workbook has no sheets");
+            }
+
+            try (InputStream sheet = sheets.next()) {
+                XMLReader xmlReader = XMLHelper.newXMLReader();
+                xmlReader.setContentHandler(new XSSFSheetXMLHandler(
+                        styles, strings, new RowCollector(handler), new RawValueFormatter(), false));
+                xmlReader.parse(new InputSource(sheet));
+            }
+        } finally {
+            // Read-only use: close without trying to save anything back
+            pkg.revert();
+        }
+    }
+
+    // A stream has no random access, so it is spooled to a temp file first
+    public static void read(InputStream is, RowHandler handler) throws Exception {
+        Path spool = Files.createTempFile("xlsx-", ".xlsx");
+        try {
+            Files.copy(is, spool, StandardCopyOption.REPLACE_EXISTING);
+            read(spool.toFile(), handler);
+        } finally {
+            Files.deleteIfExists(spool);
+        }
+    }
+
+    // Collects cells of the current row into a reusable, column-indexed list
+    private static class RowCollector implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final RowHandler handler;
+        private final List<String> values = new ArrayList<>();
+        private int nextCol;
+
+        RowCollector(RowHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            values.clear();
+            nextCol = 0;
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            handler.row(rowNum, values);
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int col = cellReference == null ? nextCol : columnOf(cellReference);
+            while (values.size() < col) {
+                values.add("");
+            }
+            values.add(formattedValue == null ? "" : formattedValue.trim());
+            nextCol = col + 1;
+        }
+
+        // "AB12" -> 27 without allocating a CellReference per cell
+        private static int columnOf(String ref) {
+            int col = 0;
+            for (int i = 0; i < ref.length(); i++) {
+                char ch = ref.charAt(i);
+                if (ch < 'A' || ch > 'Z') break;
+                col = col * 26 + (ch - 'A' + 1);
+            }
+            return col - 1;
+        }
+    }
+
+    // Keeps numbers raw (no thousands separators / rounding) and turns dates into ISO strings
+    private static class RawValueFormatter extends DataFormatter {
+        @Override
+        public String formatRawCellContents(double value, int formatIndex, String formatString) {
+            if (DateUtil.isADateFormat(formatIndex, formatString) && DateUtil.isValidExcelDate(value)) {
+                return DateUtil.getLocalDateTime(value).toLocalDate().toString();
+            }
+            return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+        }
+    }
+}
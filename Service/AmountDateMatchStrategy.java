@@ -0,0 +1,70 @@
+package com.RK8.V2.Service;
+
+import com.RK8.V2.DTO.Gstr2BDTO;
+import com.RK8.V2.DTO.Money;
+import com.RK8.V2.DTO.PurchaseInvoiceDTO;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.function.Consumer;
+
+// Strategy 5: same GSTIN, same tax within tolerance and a nearby date, whatever the invoice
+// number says. Zero-tax purchases are skipped, they would pair with any zero-tax record.
+@Component
+public class AmountDateMatchStrategy implements MatchStrategy {
+    private final MatchWindows windows;
+
+    public AmountDateMatchStrategy(MatchWindows windows) {
+        this.windows = windows;
+    }
+
+    @Override
+    public String name() {
+        return "amount";
+    }
+
+    @Override
+    public boolean sameSupplier() {
+        return true;
+    }
+
+    // Closest tax wins, then closest date
+    @Override
+    public Gstr2BDTO findMatch(PurchaseInvoiceDTO purchase, MatchContext context, StrategyCounters counters) {
+        LocalDate purchaseDate = purchase.getInvoiceDate();
+        Money purchaseTax = purchase.getTotalTax();
+        Gstr2BDTO[] best = new Gstr2BDTO[1];
+        long[] bestScore = {Long.MAX_VALUE, Long.MAX_VALUE};
+
+        collectCandidates(purchase, context, counters, c -> {
+            long taxDiff = c.getTotalTax().distance(purchaseTax);
+            long dateDiff = purchaseDate == null || c.getInvoiceDate() == null ? 0
+                    : Math.abs(purchaseDate.toEpochDay() - c.getInvoiceDate().toEpochDay());
+            if (taxDiff < bestScore[0] || (taxDiff == bestScore[0] && dateDiff < bestScore[1])) {
+                best[0] = c;
+                bestScore[0] = taxDiff;
+                bestScore[1] = dateDiff;
+            }
+        });
+        return best[0];
+    }
+
+    @Override
+    public void collectCandidates(PurchaseInvoiceDTO purchase, MatchContext context, StrategyCounters counters,
+                                  Consumer<Gstr2BDTO> sink) {
+        String gstin = context.gstinOf(purchase);
+        Money purchaseTax = purchase.getTotalTax();
+        LocalDate purchaseDate = purchase.getInvoiceDate();
+        if (purchaseTax.isZero() || context.sameGstin(gstin).isEmpty()) return;
+
+        long[] examined = {0};
+        context.supplier(gstin).byTax().forEachWithin(purchaseTax.getPaise(),
+                Purchase2BReconciliationService.TOLERANCE_PAISE, c -> {
+                    examined[0]++;
+                    if (MatchWindows.within(purchaseDate, c.getInvoiceDate(), windows.getAmountDays())) {
+                        sink.accept(c);
+                    }
+                });
+        counters.examined(examined[0]);
+    }
+}
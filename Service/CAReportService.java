@@ -1,15 +1,16 @@
 package com.RK8.V2.Service;
 
 import com.RK8.V2.DTO.Gstr2BDTO;
+import com.RK8.V2.DTO.Money;
 import com.RK8.V2.DTO.PurchaseInvoiceDTO;
 import com.RK8.V2.DTO.ReconciliationResult;
+import com.RK8.V2.DTO.ReconciliationStatus;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.ss.util.CellRangeAddress;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.springframework.stereotype.Service;
 
 import java.io.ByteArrayOutputStream;
-import java.math.BigDecimal;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -18,6 +19,8 @@ import java.util.stream.Collectors;
 public class CAReportService {
 
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd-MMM-yyyy");
+    private static final Money HIGH_PRIORITY_AMOUNT = Money.ofRupees(10000);
+    private static final Money MEDIUM_PRIORITY_AMOUNT = Money.ofRupees(1000);
 
     public byte[] generateCAReport(List<PurchaseInvoiceDTO> purchases,
                                    List<Gstr2BDTO> gstr2bList,
@@ -27,8 +30,11 @@ public class CAReportService {
             // Create professional styles
             Map<String, CellStyle> styles = createStyles(workbook);
 
+            // Counts and month / supplier rollups for sheets 1, 5 and 6, in one pass
+            ResultAggregate totals = ResultAggregate.of(results, 0);
+
             // Sheet 1: Executive Summary
-            createExecutiveSummarySheet(workbook, styles, purchases, gstr2bList, results);
+            createExecutiveSummarySheet(workbook, styles, purchases, gstr2bList, totals);
 
             // Sheet 2: Reconciliation Details
             createReconciliationDetailsSheet(workbook, styles, results);
@@ -40,10 +46,10 @@ public class CAReportService {
             createMatchedInvoicesSheet(workbook, styles, results);
 
             // Sheet 5: ITC Summary by Month
-            createMonthlySummarySheet(workbook, styles, results);
+            createMonthlySummarySheet(workbook, styles, totals);
 
             // Sheet 6: Supplier-wise Summary
-            createSupplierSummarySheet(workbook, styles, results);
+            createSupplierSummarySheet(workbook, styles, totals);
 
             // Write to byte array
             ByteArrayOutputStream baos = new ByteArrayOutputStream();
@@ -118,7 +124,7 @@ public class CAReportService {
                                              Map<String, CellStyle> styles,
                                              List<PurchaseInvoiceDTO> purchases,
                                              List<Gstr2BDTO> gstr2bList,
-                                             List<ReconciliationResult> results) {
+                                             ResultAggregate totals) {
 
         Sheet sheet = workbook.createSheet("Executive Summary");
 
@@ -139,7 +145,7 @@ public class CAReportService {
         // Period
         rowNum++;
         Row periodRow = sheet.createRow(rowNum++);
-        periodRow.createCell(0).setCellValue("Period: " + getPeriodCovered(results));
+        periodRow.createCell(0).setCellValue("Period: " + totals.getPeriodCovered());
 
         // Summary Table
         rowNum += 2;
@@ -152,29 +158,23 @@ public class CAReportService {
         }
 
         // Calculate statistics
-        Map<String, Long> statusCounts = results.stream()
-                .collect(Collectors.groupingBy(ReconciliationResult::getStatus, Collectors.counting()));
-
-        long matched = statusCounts.getOrDefault("MATCHED", 0L) +
-                statusCounts.getOrDefault("MATCHED_WITH_TOLERANCE", 0L);
-        long missingInPurchase = statusCounts.getOrDefault("MISSING_IN_PURCHASE", 0L);
-        long missingIn2B = statusCounts.getOrDefault("MISSING_IN_2B", 0L);
+        long matched = totals.getMatched();
+        long missingInPurchase = totals.count(ReconciliationStatus.MISSING_IN_PURCHASE);
+        long missingIn2B = totals.count(ReconciliationStatus.MISSING_IN_2B);
 
-        BigDecimal total2BTax = gstr2bList.stream()
-                .map(g -> g.getIgst().add(g.getCgst()).add(g.getSgst()))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        Money total2BTax = gstr2bList.stream()
+                .map(Gstr2BDTO::getTotalTax)
+                .reduce(Money.ZERO, Money::plus);
 
-        BigDecimal totalPurchaseTax = purchases.stream()
-                .map(p -> p.getIgst().add(p.getCgst()).add(p.getSgst()))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        Money totalPurchaseTax = purchases.stream()
+                .map(PurchaseInvoiceDTO::getTotalTax)
+                .reduce(Money.ZERO, Money::plus);
 
-        BigDecimal itcAtRisk = results.stream()
-                .map(ReconciliationResult::getItcAtRisk)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        Money itcAtRisk = totals.getItcAtRisk();
 
-        BigDecimal itcAvailable = total2BTax;
-        BigDecimal itcClaimed = totalPurchaseTax;
-        BigDecimal itcUnclaimed = itcAvailable.subtract(itcClaimed).max(BigDecimal.ZERO);
+        Money itcAvailable = total2BTax;
+        Money itcClaimed = totalPurchaseTax;
+        Money itcUnclaimed = itcAvailable.minus(itcClaimed).max(Money.ZERO);
 
         // Summary rows
         String[][] summaryData = {
@@ -250,7 +250,7 @@ public class CAReportService {
 
         // Filter and sort mismatches
         List<ReconciliationResult> mismatches = results.stream()
-                .filter(r -> !r.getStatus().startsWith("MATCHED"))
+                .filter(r -> !r.getStatus().isMatched())
                 .sorted((a, b) -> b.getItcAtRisk().compareTo(a.getItcAtRisk()))
                 .collect(Collectors.toList());
 
@@ -273,22 +273,22 @@ public class CAReportService {
             gstr2bTaxCell.setCellStyle(styles.get("currency"));
 
             Cell diffCell = row.createCell(6);
-            BigDecimal diff = r.getGstr2bTax().subtract(r.getPurchaseTax()).abs();
+            Money diff = r.getGstr2bTax().minus(r.getPurchaseTax()).abs();
             diffCell.setCellValue(diff.doubleValue());
             diffCell.setCellStyle(styles.get("currency"));
 
             Cell riskCell = row.createCell(7);
             riskCell.setCellValue(r.getItcAtRisk().doubleValue());
             riskCell.setCellStyle(styles.get("currency"));
-            if (r.getItcAtRisk().compareTo(new BigDecimal("10000")) > 0) {
+            if (r.getItcAtRisk().compareTo(HIGH_PRIORITY_AMOUNT) > 0) {
                 riskCell.setCellStyle(styles.get("red"));
             }
 
-            row.createCell(8).setCellValue(r.getStatus());
+            row.createCell(8).setCellValue(r.getStatus().name());
             row.createCell(9).setCellValue(getActionForStatus(r.getStatus()));
 
             // Apply highlight to entire row for missing in purchase
-            if ("MISSING_IN_PURCHASE".equals(r.getStatus())) {
+            if (r.getStatus() == ReconciliationStatus.MISSING_IN_PURCHASE) {
                 for (int i = 0; i < 10; i++) {
                     row.getCell(i).setCellStyle(styles.get("highlight"));
                 }
@@ -299,9 +299,9 @@ public class CAReportService {
         Row totalRow = sheet.createRow(rowNum++);
         totalRow.createCell(3).setCellValue("TOTAL:");
 
-        BigDecimal totalRisk = mismatches.stream()
+        Money totalRisk = mismatches.stream()
                 .map(ReconciliationResult::getItcAtRisk)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+                .reduce(Money.ZERO, Money::plus);
 
         Cell totalRiskCell = totalRow.createCell(7);
         totalRiskCell.setCellValue(totalRisk.doubleValue());
@@ -344,7 +344,7 @@ public class CAReportService {
 
         // Get missing in purchase invoices
         List<ReconciliationResult> missingInPurchase = results.stream()
-                .filter(r -> "MISSING_IN_PURCHASE".equals(r.getStatus()))
+                .filter(r -> r.getStatus() == ReconciliationStatus.MISSING_IN_PURCHASE)
                 .sorted((a, b) -> b.getGstr2bTax().compareTo(a.getGstr2bTax()))
                 .collect(Collectors.toList());
 
@@ -419,7 +419,7 @@ public class CAReportService {
 
         // Get matched invoices
         List<ReconciliationResult> matched = results.stream()
-                .filter(r -> r.getStatus().startsWith("MATCHED"))
+                .filter(r -> r.getStatus().isMatched())
                 .collect(Collectors.toList());
 
         // Data rows
@@ -438,7 +438,7 @@ public class CAReportService {
             gstr2bTaxCell.setCellValue(r.getGstr2bTax().doubleValue());
             gstr2bTaxCell.setCellStyle(styles.get("currency"));
 
-            row.createCell(5).setCellValue(r.getStatus());
+            row.createCell(5).setCellValue(r.getStatus().name());
             row.createCell(6).setCellValue("✓ Verified");
         }
 
@@ -450,7 +450,7 @@ public class CAReportService {
 
     private void createMonthlySummarySheet(XSSFWorkbook workbook,
                                            Map<String, CellStyle> styles,
-                                           List<ReconciliationResult> results) {
+                                           ResultAggregate totals) {
 
         Sheet sheet = workbook.createSheet("Monthly ITC Summary");
         int rowNum = 0;
@@ -472,29 +472,17 @@ public class CAReportService {
             cell.setCellStyle(styles.get("header"));
         }
 
-        // Group by month
-        Map<String, List<ReconciliationResult>> byMonth = results.stream()
-                .collect(Collectors.groupingBy(r -> r.getInvoiceMonth().toString()));
-
-        // Data rows
-        for (Map.Entry<String, List<ReconciliationResult>> entry : byMonth.entrySet()) {
+        // Data rows, one per month
+        for (Map.Entry<String, ResultAggregate.MonthTotals> entry : totals.getMonths().entrySet()) {
             String month = entry.getKey();
-            List<ReconciliationResult> monthResults = entry.getValue();
+            ResultAggregate.MonthTotals monthTotals = entry.getValue();
 
-            long totalInvoices = monthResults.size();
-            BigDecimal itcAvailable = monthResults.stream()
-                    .map(ReconciliationResult::getGstr2bTax)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+            long totalInvoices = monthTotals.getCount();
+            Money itcAvailable = monthTotals.getGstr2bTax();
+            Money itcClaimed = monthTotals.getPurchaseTax();
+            Money itcAtRisk = monthTotals.getItcAtRisk();
 
-            BigDecimal itcClaimed = monthResults.stream()
-                    .map(ReconciliationResult::getPurchaseTax)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-            BigDecimal itcAtRisk = monthResults.stream()
-                    .map(ReconciliationResult::getItcAtRisk)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-            double complianceRate = itcAvailable.compareTo(BigDecimal.ZERO) == 0 ? 100.0 :
+            double complianceRate = itcAvailable.compareTo(Money.ZERO) == 0 ? 100.0 :
                     (itcClaimed.doubleValue() / itcAvailable.doubleValue()) * 100;
 
             Row row = sheet.createRow(rowNum++);
@@ -529,7 +517,7 @@ public class CAReportService {
 
     private void createSupplierSummarySheet(XSSFWorkbook workbook,
                                             Map<String, CellStyle> styles,
-                                            List<ReconciliationResult> results) {
+                                            ResultAggregate totals) {
 
         Sheet sheet = workbook.createSheet("Supplier-wise Summary");
         int rowNum = 0;
@@ -551,31 +539,16 @@ public class CAReportService {
             cell.setCellStyle(styles.get("header"));
         }
 
-        // Group by supplier
-        Map<String, List<ReconciliationResult>> bySupplier = results.stream()
-                .collect(Collectors.groupingBy(ReconciliationResult::getSupplierGstin));
-
-        // Data rows
-        for (Map.Entry<String, List<ReconciliationResult>> entry : bySupplier.entrySet()) {
+        // Data rows, one per supplier
+        for (Map.Entry<String, ResultAggregate.SupplierTotals> entry : totals.getSuppliers().entrySet()) {
             String gstin = entry.getKey();
-            List<ReconciliationResult> supplierResults = entry.getValue();
-
-            long totalInvoices = supplierResults.size();
-            long matched = supplierResults.stream()
-                    .filter(r -> r.getStatus().startsWith("MATCHED"))
-                    .count();
-
-            long missingInPurchase = supplierResults.stream()
-                    .filter(r -> "MISSING_IN_PURCHASE".equals(r.getStatus()))
-                    .count();
+            ResultAggregate.SupplierTotals supplierTotals = entry.getValue();
 
-            BigDecimal totalTax = supplierResults.stream()
-                    .map(ReconciliationResult::getGstr2bTax)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-            BigDecimal risk = supplierResults.stream()
-                    .map(ReconciliationResult::getItcAtRisk)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+            long totalInvoices = supplierTotals.getCount();
+            long matched = supplierTotals.getMatched();
+            long missingInPurchase = supplierTotals.getMissingInPurchase();
+            Money totalTax = supplierTotals.getGstr2bTax();
+            Money risk = supplierTotals.getItcAtRisk();
 
             Row row = sheet.createRow(rowNum++);
             row.createCell(0).setCellValue(gstin);
@@ -591,7 +564,7 @@ public class CAReportService {
             riskCell.setCellValue(risk.doubleValue());
             riskCell.setCellStyle(styles.get("currency"));
 
-            if (risk.compareTo(BigDecimal.ZERO) > 0) {
+            if (risk.compareTo(Money.ZERO) > 0) {
                 row.getCell(3).setCellStyle(styles.get("highlight"));
                 riskCell.setCellStyle(styles.get("red"));
             }
@@ -604,43 +577,27 @@ public class CAReportService {
     }
 
     // Helper methods
-    private String formatCurrency(BigDecimal amount) {
-        return String.format("₹%,.2f", amount);
-    }
-
-    private String getPeriodCovered(List<ReconciliationResult> results) {
-        if (results.isEmpty()) return "N/A";
-
-        String minMonth = results.stream()
-                .map(r -> r.getInvoiceMonth().toString())
-                .min(String::compareTo)
-                .orElse("N/A");
-
-        String maxMonth = results.stream()
-                .map(r -> r.getInvoiceMonth().toString())
-                .max(String::compareTo)
-                .orElse("N/A");
-
-        return minMonth.equals(maxMonth) ? minMonth : minMonth + " to " + maxMonth;
+    private String formatCurrency(Money amount) {
+        return String.format("₹%,.2f", amount.toBigDecimal());
     }
 
-    private String getActionForStatus(String status) {
+    private String getActionForStatus(ReconciliationStatus status) {
         switch (status) {
-            case "MISSING_IN_PURCHASE":
+            case MISSING_IN_PURCHASE:
                 return "ADD TO PURCHASE REGISTER";
-            case "MISSING_IN_2B":
+            case MISSING_IN_2B:
                 return "FOLLOW UP WITH SUPPLIER";
-            case "MISMATCH":
+            case MISMATCH:
                 return "VERIFY TAX AMOUNT";
             default:
                 return "REVIEW";
         }
     }
 
-    private String getPriority(BigDecimal amount) {
-        if (amount.compareTo(new BigDecimal("10000")) > 0) {
+    private String getPriority(Money amount) {
+        if (amount.compareTo(HIGH_PRIORITY_AMOUNT) > 0) {
             return "HIGH";
-        } else if (amount.compareTo(new BigDecimal("1000")) > 0) {
+        } else if (amount.compareTo(MEDIUM_PRIORITY_AMOUNT) > 0) {
             return "MEDIUM";
         } else {
             return "LOW";
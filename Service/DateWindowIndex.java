@@ -0,0 +1,74 @@
+package com.RK8.V2.Service;
+
+import com.RK8.V2.DTO.Gstr2BDTO;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+
+// One supplier's 2B records sorted by invoice epoch-day, so the records dated within a window
+// around a purchase are a binary-searched range instead of a scan. Each record carries its
+// position in the source list, letting callers keep "first in list order" semantics.
+public final class DateWindowIndex {
+    // Records without a date sort first and only show up for unbounded windows
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    private final long[] epochDays;
+    private final Gstr2BDTO[] records;
+    private final int[] ordinals;
+
+    public DateWindowIndex(List<Gstr2BDTO> source) {
+        int n = source.size();
+        long[] days = new long[n];
+        for (int i = 0; i < n; i++) {
+            LocalDate d = source.get(i).getInvoiceDate();
+            days[i] = d == null ? NO_DATE : d.toEpochDay();
+        }
+
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        Arrays.sort(order, Comparator.comparingLong(i -> days[i]));
+
+        this.epochDays = new long[n];
+        this.records = new Gstr2BDTO[n];
+        this.ordinals = new int[n];
+        for (int i = 0; i < n; i++) {
+            epochDays[i] = days[order[i]];
+            records[i] = source.get(order[i]);
+            ordinals[i] = order[i];
+        }
+    }
+
+    // Visits records dated within windowDays of date (all records when windowDays < 0),
+    // passing each record's position in the source list
+    public void forEachWithin(LocalDate date, int windowDays, ObjIntConsumer<Gstr2BDTO> visitor) {
+        int from = 0;
+        int to = records.length;
+        if (windowDays >= 0) {
+            if (date == null) return;
+            long day = date.toEpochDay();
+            from = lowerBound(day - windowDays);
+            to = lowerBound(day + windowDays + 1);
+        }
+        for (int i = from; i < to; i++) {
+            visitor.accept(records[i], ordinals[i]);
+        }
+    }
+
+    // First position whose day is >= epochDay
+    private int lowerBound(long epochDay) {
+        int lo = 0;
+        int hi = epochDays.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (epochDays[mid] < epochDay) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,84 @@
+package com.RK8.V2.Service;
+
+import com.RK8.V2.DTO.Gstr2BDTO;
+import com.RK8.V2.DTO.Money;
+import com.RK8.V2.DTO.PurchaseInvoiceDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+// Strategy 2b: same GSTIN, invoice number within a few Damerau edits (typos, swapped digits).
+// Consecutive invoices of one supplier are also one edit apart, so the tax amount has to agree
+// within tolerance as well as the date.
+@Component
+public class EditDistanceMatchStrategy implements MatchStrategy {
+    // Shorter invoice numbers are too close to each other for edit-distance matching
+    private static final int MIN_EDIT_MATCH_LENGTH = 5;
+
+    private final MatchWindows windows;
+    // Damerau edits allowed; 0 turns the strategy off
+    private final int maxEdits;
+
+    public EditDistanceMatchStrategy(MatchWindows windows,
+                                     @Value("${reconcile.fuzzy.max-edits:1}") int maxEdits) {
+        this.windows = windows;
+        this.maxEdits = maxEdits;
+    }
+
+    @Override
+    public String name() {
+        return "edits";
+    }
+
+    @Override
+    public boolean sameSupplier() {
+        return true;
+    }
+
+    @Override
+    public Gstr2BDTO findMatch(PurchaseInvoiceDTO purchase, MatchContext context, StrategyCounters counters) {
+        String gstin = context.gstinOf(purchase);
+        String folded = context.invoiceOf(purchase).folded;
+        if (!applies(gstin, folded, context)) return null;
+
+        Money purchaseTax = purchase.getTotalTax();
+        long[] examined = {0};
+        Predicate<Gstr2BDTO> accept = acceptor(purchase);
+        Gstr2BDTO match = context.supplier(gstin).tree().nearest(folded, maxEdits, purchaseTax, c -> {
+            examined[0]++;
+            return accept.test(c);
+        });
+        counters.examined(examined[0]);
+        return match;
+    }
+
+    @Override
+    public void collectCandidates(PurchaseInvoiceDTO purchase, MatchContext context, StrategyCounters counters,
+                                  Consumer<Gstr2BDTO> sink) {
+        String gstin = context.gstinOf(purchase);
+        String folded = context.invoiceOf(purchase).folded;
+        if (!applies(gstin, folded, context)) return;
+
+        long[] examined = {0};
+        Predicate<Gstr2BDTO> accept = acceptor(purchase);
+        context.supplier(gstin).tree().search(folded, maxEdits, (c, edits) -> {
+            examined[0]++;
+            if (accept.test(c)) sink.accept(c);
+        });
+        counters.examined(examined[0]);
+    }
+
+    private boolean applies(String gstin, String folded, MatchContext context) {
+        return maxEdits > 0 && folded.length() >= MIN_EDIT_MATCH_LENGTH && !context.sameGstin(gstin).isEmpty();
+    }
+
+    private Predicate<Gstr2BDTO> acceptor(PurchaseInvoiceDTO purchase) {
+        Money purchaseTax = purchase.getTotalTax();
+        LocalDate purchaseDate = purchase.getInvoiceDate();
+        return c -> c.getTotalTax().distance(purchaseTax) <= Purchase2BReconciliationService.TOLERANCE_PAISE
+                && MatchWindows.within(purchaseDate, c.getInvoiceDate(), windows.getEditsDays());
+    }
+}
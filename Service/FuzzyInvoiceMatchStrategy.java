@@ -0,0 +1,74 @@
+package com.RK8.V2.Service;
+
+import com.RK8.V2.DTO.Gstr2BDTO;
+import com.RK8.V2.DTO.PurchaseInvoiceDTO;
+import com.RK8.V2.Parser.InvoiceNormalizer.InvoiceForms;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.function.Consumer;
+
+// Strategy 2: same GSTIN, invoice number equal after O/0, I/1 folding or prefix/suffix removal,
+// dated within the fuzzy window
+@Component
+public class FuzzyInvoiceMatchStrategy implements MatchStrategy {
+    private final MatchWindows windows;
+
+    public FuzzyInvoiceMatchStrategy(MatchWindows windows) {
+        this.windows = windows;
+    }
+
+    @Override
+    public String name() {
+        return "fuzzy";
+    }
+
+    @Override
+    public boolean sameSupplier() {
+        return true;
+    }
+
+    // Candidates come from the supplier's date index; the earliest in 2B list order wins
+    @Override
+    public Gstr2BDTO findMatch(PurchaseInvoiceDTO purchase, MatchContext context, StrategyCounters counters) {
+        String gstin = context.gstinOf(purchase);
+        if (context.sameGstin(gstin).isEmpty()) return null;
+
+        InvoiceForms purchaseInvoice = context.invoiceOf(purchase);
+        Gstr2BDTO[] fuzzy = new Gstr2BDTO[1];
+        int[] fuzzyOrdinal = {Integer.MAX_VALUE};
+        long[] examined = {0};
+        context.supplier(gstin).byDate().forEachWithin(purchase.getInvoiceDate(), windows.getFuzzyDays(), (candidate, ordinal) -> {
+            examined[0]++;
+            if (ordinal < fuzzyOrdinal[0]
+                    && MatchContext.isInvoiceFuzzyMatch(purchaseInvoice, context.invoice(candidate.getInvoiceNo()))) {
+                fuzzy[0] = candidate;
+                fuzzyOrdinal[0] = ordinal;
+            }
+        });
+        counters.examined(examined[0]);
+        return fuzzy[0];
+    }
+
+    // Fuzzy equality is folded or base form equality, so both are plain lookups
+    @Override
+    public void collectCandidates(PurchaseInvoiceDTO purchase, MatchContext context, StrategyCounters counters,
+                                  Consumer<Gstr2BDTO> sink) {
+        String gstin = context.gstinOf(purchase);
+        if (context.sameGstin(gstin).isEmpty()) return;
+
+        InvoiceForms purchaseInvoice = context.invoiceOf(purchase);
+        LocalDate purchaseDate = purchase.getInvoiceDate();
+        SupplierIndex supplier = context.supplier(gstin);
+        long examined = 0;
+        for (Gstr2BDTO c : supplier.withFolded(purchaseInvoice.folded)) {
+            examined++;
+            if (MatchWindows.within(purchaseDate, c.getInvoiceDate(), windows.getFuzzyDays())) sink.accept(c);
+        }
+        for (Gstr2BDTO c : supplier.withBase(purchaseInvoice.base)) {
+            examined++;
+            if (MatchWindows.within(purchaseDate, c.getInvoiceDate(), windows.getFuzzyDays())) sink.accept(c);
+        }
+        counters.examined(examined);
+    }
+}
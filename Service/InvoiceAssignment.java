@@ -0,0 +1,175 @@
+package com.RK8.V2.Service;
+
+import java.util.*;
+
+// Resolves scored purchase/2B candidate pairs one-to-one, so a 2B invoice is claimed by at
+// most one purchase line. Pairs are identified by purchase position and 2B position; a lower
+// cost is a better match. Costs are tiered: every pair of a more confident strategy beats every
+// pair of a weaker one, and within a tier the smaller tax difference wins. The tier is the
+// strategy's position in the match chain.
+public final class InvoiceAssignment {
+    private static final long TIER_WEIGHT = 1L << 40;
+    private static final long FORBIDDEN = Long.MAX_VALUE / 4;
+
+    private InvoiceAssignment() {
+    }
+
+    public static final class Pair implements Comparable<Pair> {
+        final int purchase;
+        final int record;
+        final long cost;
+
+        public Pair(int purchase, int record, int tier, long taxDiffPaise) {
+            this.purchase = purchase;
+            this.record = record;
+            this.cost = tier * TIER_WEIGHT + Math.min(taxDiffPaise, TIER_WEIGHT - 1);
+        }
+
+        // Ties fall back to purchase order, then 2B order, so results are deterministic
+        @Override
+        public int compareTo(Pair o) {
+            if (cost != o.cost) return Long.compare(cost, o.cost);
+            if (purchase != o.purchase) return Integer.compare(purchase, o.purchase);
+            return Integer.compare(record, o.record);
+        }
+    }
+
+    // Best-first: O(p log p) for p pairs. assigned[purchase] receives the 2B position and
+    // assignedTier[purchase] the tier of the pair that won.
+    public static void greedy(List<Pair> pairs, int[] assigned, int[] assignedTier, BitSet taken) {
+        PriorityQueue<Pair> queue = new PriorityQueue<>(pairs);
+        while (!queue.isEmpty()) {
+            Pair pair = queue.poll();
+            if (assigned[pair.purchase] >= 0 || taken.get(pair.record)) continue;
+            assigned[pair.purchase] = pair.record;
+            assignedTier[pair.purchase] = tierOf(pair.cost);
+            taken.set(pair.record);
+        }
+    }
+
+    // Minimum total cost assignment (Hungarian, O(n^3)), solved one tier at a time, most
+    // confident first: a weaker pair only gets the records the stronger tiers left free, even
+    // where giving up a stronger pair would allow more matches overall. A tier falls back to
+    // greedy when either side has more than maxSize members.
+    public static void optimal(List<Pair> pairs, int[] assigned, int[] assignedTier, BitSet taken,
+                               int maxSize) {
+        TreeMap<Integer, List<Pair>> byTier = new TreeMap<>();
+        for (Pair pair : pairs) {
+            byTier.computeIfAbsent(tierOf(pair.cost), k -> new ArrayList<>()).add(pair);
+        }
+        byTier.forEach((tier, tierPairs) -> optimalTier(tier, tierPairs, assigned, assignedTier, taken, maxSize));
+    }
+
+    private static void optimalTier(int tier, List<Pair> pairs, int[] assigned, int[] assignedTier, BitSet taken,
+                                    int maxSize) {
+        Map<Integer, Integer> rows = new LinkedHashMap<>();
+        Map<Integer, Integer> cols = new LinkedHashMap<>();
+        for (Pair pair : pairs) {
+            if (assigned[pair.purchase] >= 0 || taken.get(pair.record)) continue;
+            rows.putIfAbsent(pair.purchase, rows.size());
+            cols.putIfAbsent(pair.record, cols.size());
+        }
+        if (rows.isEmpty()) return;
+        if (rows.size() > maxSize || cols.size() > maxSize) {
+            greedy(pairs, assigned, assignedTier, taken);
+            return;
+        }
+
+        // Within the tier only the tax difference is left, always below TIER_WEIGHT. Leaving a
+        // purchase or a 2B record unassigned costs TIER_WEIGHT, so matching two free records
+        // always lowers the total.
+        long base = tier * TIER_WEIGHT;
+        long unassigned = TIER_WEIGHT;
+
+        // Square matrix: real rows/cols padded with one dummy per member of the other side
+        int p = rows.size();
+        int r = cols.size();
+        int n = p + r;
+        long[][] cost = new long[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                boolean realRow = i < p;
+                boolean realCol = j < r;
+                cost[i][j] = realRow && realCol ? FORBIDDEN : realRow || realCol ? unassigned : 0;
+            }
+        }
+        for (Pair pair : pairs) {
+            Integer i = rows.get(pair.purchase);
+            Integer j = cols.get(pair.record);
+            if (i != null && j != null && pair.cost - base < cost[i][j]) cost[i][j] = pair.cost - base;
+        }
+
+        int[] rowToCol = hungarian(cost);
+        int[] purchaseAt = new int[p];
+        int[] recordAt = new int[r];
+        rows.forEach((purchase, i) -> purchaseAt[i] = purchase);
+        cols.forEach((record, j) -> recordAt[j] = record);
+        for (int i = 0; i < p; i++) {
+            int j = rowToCol[i];
+            if (j < r && cost[i][j] < FORBIDDEN) {
+                assigned[purchaseAt[i]] = recordAt[j];
+                assignedTier[purchaseAt[i]] = tier;
+                taken.set(recordAt[j]);
+            }
+        }
+    }
+
+    private static int tierOf(long cost) {
+        return (int) (cost / TIER_WEIGHT);
+    }
+
+    // Classic potentials formulation on a square matrix; returns row -> column
+    private static int[] hungarian(long[][] a) {
+        int n = a.length;
+        long[] u = new long[n + 1];
+        long[] v = new long[n + 1];
+        int[] p = new int[n + 1];
+        int[] way = new int[n + 1];
+
+        for (int i = 1; i <= n; i++) {
+            p[0] = i;
+            int j0 = 0;
+            long[] minv = new long[n + 1];
+            boolean[] used = new boolean[n + 1];
+            Arrays.fill(minv, Long.MAX_VALUE);
+            do {
+                used[j0] = true;
+                int i0 = p[j0];
+                long delta = Long.MAX_VALUE;
+                int j1 = 0;
+                for (int j = 1; j <= n; j++) {
+                    if (used[j]) continue;
+                    long cur = a[i0 - 1][j - 1] - u[i0] - v[j];
+                    if (cur < minv[j]) {
+                        minv[j] = cur;
+                        way[j] = j0;
+                    }
+                    if (minv[j] < delta) {
+                        delta = minv[j];
+                        j1 = j;
+                    }
+                }
+                for (int j = 0; j <= n; j++) {
+                    if (used[j]) {
+                        u[p[j]] += delta;
+                        v[j] -= delta;
+                    } else {
+                        minv[j] -= delta;
+                    }
+                }
+                j0 = j1;
+            } while (p[j0] != 0);
+            do {
+                int j1 = way[j0];
+                p[j0] = p[j1];
+                j0 = j1;
+            } while (j0 != 0);
+        }
+
+        int[] rowToCol = new int[n];
+        for (int j = 1; j <= n; j++) {
+            rowToCol[p[j] - 1] = j - 1;
+        }
+        return rowToCol;
+    }
+}
@@ -0,0 +1,174 @@
+package com.RK8.V2.Service;
+
+import com.RK8.V2.DTO.Gstr2BDTO;
+import com.RK8.V2.DTO.Money;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Predicate;
+
+// BK-tree over one supplier's 2B invoice numbers, for near-miss lookups (typos, swapped digits).
+// The tree is organised by Levenshtein distance, which is a true metric, so pruning is exact.
+// Matches are then confirmed with optimal-string-alignment (Damerau) distance, which also counts
+// an adjacent transposition as one edit; since OSA <= Levenshtein <= 2 * OSA, searching with a
+// Levenshtein radius of 2k finds every record within k Damerau edits.
+public final class InvoiceBkTree {
+    private Node root;
+
+    public void add(String invoice, Gstr2BDTO record) {
+        if (root == null) {
+            root = new Node(invoice);
+            root.records.add(record);
+            return;
+        }
+
+        Node node = root;
+        while (true) {
+            int d = levenshtein(invoice, node.invoice);
+            if (d == 0) {
+                node.records.add(record);
+                return;
+            }
+            Node child = node.child(d);
+            if (child == null) {
+                child = new Node(invoice);
+                child.records.add(record);
+                node.setChild(d, child);
+                return;
+            }
+            node = child;
+        }
+    }
+
+    // Closest accepted record within maxEdits; ties go to the closest tax amount, then to the
+    // first record found (the tree is built and walked in a fixed order, so this is stable)
+    public Gstr2BDTO nearest(String invoice, int maxEdits, Money targetTax, Predicate<Gstr2BDTO> accept) {
+        Gstr2BDTO[] best = new Gstr2BDTO[1];
+        int[] bestEdits = {Integer.MAX_VALUE};
+        long[] bestTaxDiff = {Long.MAX_VALUE};
+
+        search(invoice, maxEdits, (r, edits) -> {
+            if (edits > bestEdits[0] || !accept.test(r)) return;
+            long taxDiff = r.getTotalTax().distance(targetTax);
+            if (edits < bestEdits[0] || taxDiff < bestTaxDiff[0]) {
+                best[0] = r;
+                bestEdits[0] = edits;
+                bestTaxDiff[0] = taxDiff;
+            }
+        });
+        return best[0];
+    }
+
+    // Visits every record within maxEdits Damerau edits, with its edit count
+    public void search(String invoice, int maxEdits, ObjIntConsumer<Gstr2BDTO> visitor) {
+        if (root == null || maxEdits <= 0) return;
+
+        int radius = 2 * maxEdits;
+        Deque<Node> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            int d = levenshtein(invoice, node.invoice);
+
+            if (d <= radius) {
+                int edits = d <= maxEdits ? d : damerau(invoice, node.invoice);
+                if (edits <= maxEdits) {
+                    for (Gstr2BDTO r : node.records) {
+                        visitor.accept(r, edits);
+                    }
+                }
+            }
+
+            // Triangle inequality: only children at distance d-radius..d+radius can qualify
+            int hi = Math.min(d + radius, node.children.length - 1);
+            for (int cd = hi; cd >= Math.max(1, d - radius); cd--) {
+                Node child = node.children[cd];
+                if (child != null) pending.push(child);
+            }
+        }
+    }
+
+    static int levenshtein(String a, String b) {
+        int n = a.length();
+        int m = b.length();
+        if (n == 0) return m;
+        if (m == 0) return n;
+
+        int[] prev = new int[m + 1];
+        int[] curr = new int[m + 1];
+        for (int j = 0; j <= m; j++) prev[j] = j;
+
+        for (int i = 1; i <= n; i++) {
+            curr[0] = i;
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= m; j++) {
+                int cost = ca == b.charAt(j - 1) ? 0 : 1;
+                curr[j] = Math.min(Math.min(curr[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+            }
+            int[] t = prev;
+            prev = curr;
+            curr = t;
+        }
+        return prev[m];
+    }
+
+    // Optimal string alignment: Levenshtein plus adjacent transpositions
+    static int damerau(String a, String b) {
+        int n = a.length();
+        int m = b.length();
+        if (n == 0) return m;
+        if (m == 0) return n;
+
+        int[] prevPrev = new int[m + 1];
+        int[] prev = new int[m + 1];
+        int[] curr = new int[m + 1];
+        for (int j = 0; j <= m; j++) prev[j] = j;
+
+        for (int i = 1; i <= n; i++) {
+            curr[0] = i;
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= m; j++) {
+                char cb = b.charAt(j - 1);
+                int cost = ca == cb ? 0 : 1;
+                int v = Math.min(Math.min(curr[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+                if (i > 1 && j > 1 && ca == b.charAt(j - 2) && a.charAt(i - 2) == cb) {
+                    v = Math.min(v, prevPrev[j - 2] + 1);
+                }
+                curr[j] = v;
+            }
+            int[] t = prevPrev;
+            prevPrev = prev;
+            prev = curr;
+            curr = t;
+        }
+        return prev[m];
+    }
+
+    private static final class Node {
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        private final String invoice;
+        private final List<Gstr2BDTO> records = new ArrayList<>(1);
+        // Indexed by edit distance to this node
+        private Node[] children = NO_CHILDREN;
+
+        Node(String invoice) {
+            this.invoice = invoice;
+        }
+
+        Node child(int distance) {
+            return distance < children.length ? children[distance] : null;
+        }
+
+        void setChild(int distance, Node child) {
+            if (distance >= children.length) {
+                children = Arrays.copyOf(children, Math.max(distance + 1, children.length * 2));
+            }
+            children[distance] = child;
+        }
+    }
+}
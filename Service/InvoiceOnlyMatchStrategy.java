@@ -0,0 +1,51 @@
+package com.RK8.V2.Service;
+
+import com.RK8.V2.DTO.Gstr2BDTO;
+import com.RK8.V2.DTO.PurchaseInvoiceDTO;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+// Strategy 3: same invoice number under any GSTIN
+@Component
+public class InvoiceOnlyMatchStrategy implements MatchStrategy {
+    private final MatchWindows windows;
+
+    public InvoiceOnlyMatchStrategy(MatchWindows windows) {
+        this.windows = windows;
+    }
+
+    @Override
+    public String name() {
+        return "invoice-only";
+    }
+
+    @Override
+    public boolean sameSupplier() {
+        return false;
+    }
+
+    @Override
+    public Gstr2BDTO findMatch(PurchaseInvoiceDTO purchase, MatchContext context, StrategyCounters counters) {
+        List<Gstr2BDTO> candidates = candidates(purchase, context, counters);
+        return MatchContext.findClosestTaxMatch(candidates, purchase.getTotalTax(),
+                purchase.getInvoiceDate(), windows.getInvoiceOnlyDays());
+    }
+
+    @Override
+    public void collectCandidates(PurchaseInvoiceDTO purchase, MatchContext context, StrategyCounters counters,
+                                  Consumer<Gstr2BDTO> sink) {
+        for (Gstr2BDTO c : candidates(purchase, context, counters)) {
+            if (MatchWindows.within(purchase.getInvoiceDate(), c.getInvoiceDate(), windows.getInvoiceOnlyDays())) {
+                sink.accept(c);
+            }
+        }
+    }
+
+    private List<Gstr2BDTO> candidates(PurchaseInvoiceDTO purchase, MatchContext context, StrategyCounters counters) {
+        List<Gstr2BDTO> candidates = context.get(MatchContext.invoiceOnlyKey(context.invoiceOf(purchase)));
+        counters.examined(candidates.size());
+        return candidates;
+    }
+}
@@ -0,0 +1,185 @@
+package com.RK8.V2.Service;
+
+import com.RK8.V2.DTO.Gstr2BDTO;
+import com.RK8.V2.DTO.PurchaseInvoiceDTO;
+import com.RK8.V2.Parser.InvoiceNormalizer;
+import com.RK8.V2.Parser.InvoiceSnapshotCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Binary snapshots of parsed uploads on local disk, keyed by the SHA-256 of the uploaded file
+// and of the settings that decide what parsing it yields.
+// Re-uploading the same purchase register or 2B file (re-running a client) then memory-maps the
+// snapshot instead of parsing the XLSX/JSON again. Snapshot failures are logged and never fail
+// an upload; the caller just parses as before. The oldest snapshots are removed beyond max-files.
+@Service
+public class InvoiceSnapshotStore {
+    private static final String PURCHASE_PREFIX = "purchase-";
+    private static final String GSTR2B_PREFIX = "gstr2b-";
+    private static final String SUFFIX = ".snap";
+    // Bump whenever a parser changes the rows it reads out of a file
+    private static final int PARSER_VERSION = 2;
+
+    private final boolean enabled;
+    private final Path dir;
+    private final int maxFiles;
+    // Snapshots hold normalized rows, so a different codec, parser or normalizer configuration
+    // must not find the old ones
+    private final byte[] settings;
+
+    public InvoiceSnapshotStore(
+            @Value("${reconcile.snapshot.enabled:true}") boolean enabled,
+            @Value("${reconcile.snapshot.dir:./data/snapshots}") String dir,
+            @Value("${reconcile.snapshot.max-files:200}") int maxFiles,
+            InvoiceNormalizer normalizer) {
+        this.enabled = enabled;
+        this.dir = Paths.get(dir);
+        this.maxFiles = Math.max(2, maxFiles);
+        this.settings = ("codec " + InvoiceSnapshotCodec.VERSION + ", parser " + PARSER_VERSION
+                + ", normalizer " + normalizer.fingerprint()).getBytes(StandardCharsets.UTF_8);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Content key of an upload; two identical files get the same key whatever their names,
+    // as long as the parsing settings are unchanged
+    public String key(Resource file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(settings);
+        byte[] buf = new byte[1 << 16];
+        try (InputStream is = file.getInputStream()) {
+            int n;
+            while ((n = is.read(buf)) > 0) {
+                digest.update(buf, 0, n);
+            }
+        }
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    // Null when there is no usable snapshot for this key
+    public List<PurchaseInvoiceDTO> loadPurchases(String key) {
+        Path file = dir.resolve(PURCHASE_PREFIX + key + SUFFIX);
+        if (!enabled || !Files.exists(file)) return null;
+        try {
+            List<PurchaseInvoiceDTO> purchases = InvoiceSnapshotCodec.readPurchases(file);
+            touch(file);
+            return purchases;
+        } catch (IOException | RuntimeException e) {
+            discard(file, e);
+            return null;
+        }
+    }
+
+    // False when there is no usable snapshot. The sink has then normally seen no records, but a
+    // failure in the sink itself can stop a load part-way, so callers start over with a new one.
+    public boolean loadGstr2b(String key, Consumer<Gstr2BDTO> sink) {
+        Path file = dir.resolve(GSTR2B_PREFIX + key + SUFFIX);
+        if (!enabled || !Files.exists(file)) return false;
+        try {
+            // Header and dictionary are checked before the first record is handed over
+            InvoiceSnapshotCodec.readGstr2b(file, sink);
+            touch(file);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            discard(file, e);
+            return false;
+        }
+    }
+
+    public void savePurchases(String key, List<PurchaseInvoiceDTO> purchases) {
+        save(PURCHASE_PREFIX + key + SUFFIX, tmp -> InvoiceSnapshotCodec.writePurchases(tmp, purchases));
+    }
+
+    public void saveGstr2b(String key, List<Gstr2BDTO> records) {
+        save(GSTR2B_PREFIX + key + SUFFIX, tmp -> InvoiceSnapshotCodec.writeGstr2b(tmp, records));
+    }
+
+    private interface Writer {
+        void write(Path file) throws IOException;
+    }
+
+    // Written to a temp file and moved into place, so readers never see a partial snapshot
+    private void save(String name, Writer writer) {
+        if (!enabled) return;
+        Path tmp = null;
+        try {
+            Files.createDirectories(dir);
+            tmp = Files.createTempFile(dir, "snap-", ".tmp");
+            writer.write(tmp);
+            Files.move(tmp, dir.resolve(name), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            tmp = null;
+            evict();
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Could not write snapshot " + name + ": " + e.getMessage());
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    // Least recently used first: loads bump the modification time
+    private synchronized void evict() throws IOException {
+        List<Path> snapshots;
+        try (Stream<Path> files = Files.list(dir)) {
+            snapshots = files.filter(p -> p.getFileName().toString().endsWith(SUFFIX))
+                    .sorted(Comparator.comparing(this::lastModified))
+                    .collect(Collectors.toList());
+        }
+        for (int i = 0; i < snapshots.size() - maxFiles; i++) {
+            Files.deleteIfExists(snapshots.get(i));
+        }
+    }
+
+    private FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void discard(Path file, Exception e) {
+        System.err.println("Ignoring unreadable snapshot " + file + ": " + e.getMessage());
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.RK8.V2.Service;
+
+import com.RK8.V2.DTO.CachedRun;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Keeps every registered run's results on disk as a ResultFile, so a run can still be paged
+// through after the in-memory run cache has dropped it. Opened runs are held in a small LRU of
+// memory maps; the heap only ever holds the rows of the page being served. The oldest runs on
+// disk are deleted beyond max-runs.
+@Service
+public class MappedResultStore {
+    private static final String RECORDS_SUFFIX = ".rec";
+    private static final String STRINGS_SUFFIX = ".str";
+    private static final int OPEN_RUNS = 16;
+
+    private final boolean enabled;
+    private final Path dir;
+    private final int maxRuns;
+
+    // Access order, so the least recently paged run is unmapped (left to GC) first
+    private final LinkedHashMap<String, ResultFile> open = new LinkedHashMap<String, ResultFile>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ResultFile> eldest) {
+            return size() > OPEN_RUNS;
+        }
+    };
+
+    public MappedResultStore(
+            @Value("${reconcile.result-store.enabled:true}") boolean enabled,
+            @Value("${reconcile.result-store.dir:./data/results}") String dir,
+            @Value("${reconcile.result-store.max-runs:200}") int maxRuns) {
+        this.enabled = enabled;
+        this.dir = Paths.get(dir);
+        this.maxRuns = Math.max(1, maxRuns);
+    }
+
+    // Failures are logged; the run stays usable from the run cache, just not pageable later
+    public void save(CachedRun run) {
+        if (!enabled) return;
+        String runId = run.getRunId();
+        try {
+            Files.createDirectories(dir);
+            // Strings first: a records file on disk always has its side file
+            Path records = dir.resolve(runId + RECORDS_SUFFIX);
+            Path tmp = dir.resolve(runId + RECORDS_SUFFIX + ".tmp");
+            ResultFile.write(tmp, dir.resolve(runId + STRINGS_SUFFIX), run.getResults());
+            Files.move(tmp, records, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            evict();
+        } catch (IOException e) {
+            System.err.println("Could not store results of run " + runId + ": " + e.getMessage());
+            delete(runId);
+        }
+    }
+
+    public ResultFile open(String runId) {
+        if (!isRunId(runId)) {
+            throw new IllegalArgumentException("Unknown run: " + runId);
+        }
+        synchronized (open) {
+            ResultFile file = open.get(runId);
+            if (file != null) return file;
+        }
+
+        Path records = dir.resolve(runId + RECORDS_SUFFIX);
+        if (!enabled || !Files.exists(records)) {
+            throw new IllegalArgumentException("Unknown run: " + runId);
+        }
+        try {
+            ResultFile file = ResultFile.open(records, dir.resolve(runId + STRINGS_SUFFIX));
+            synchronized (open) {
+                open.put(runId, file);
+            }
+            return file;
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read results of run " + runId, e);
+        }
+    }
+
+    public boolean remove(String runId) {
+        return isRunId(runId) && delete(runId);
+    }
+
+    private boolean delete(String runId) {
+        synchronized (open) {
+            open.remove(runId);
+        }
+        boolean existed = false;
+        for (String suffix : new String[]{RECORDS_SUFFIX, RECORDS_SUFFIX + ".tmp", STRINGS_SUFFIX}) {
+            try {
+                existed |= Files.deleteIfExists(dir.resolve(runId + suffix));
+            } catch (IOException e) {
+                System.err.println("Could not delete " + runId + suffix + ": " + e.getMessage());
+            }
+        }
+        return existed;
+    }
+
+    private synchronized void evict() throws IOException {
+        List<Path> runs;
+        try (Stream<Path> files = Files.list(dir)) {
+            runs = files.filter(p -> p.getFileName().toString().endsWith(RECORDS_SUFFIX))
+                    .sorted(Comparator.comparing(this::lastModified))
+                    .collect(Collectors.toList());
+        }
+        for (int i = 0; i < runs.size() - maxRuns; i++) {
+            String name = runs.get(i).getFileName().toString();
+            delete(name.substring(0, name.length() - RECORDS_SUFFIX.length()));
+        }
+    }
+
+    private FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    // Run IDs are UUIDs; anything else must not reach the file system
+    private static boolean isRunId(String runId) {
+        return runId != null && runId.matches("[0-9a-fA-F-]{1,64}");
+    }
+}
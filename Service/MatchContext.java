@@ -0,0 +1,163 @@
+package com.RK8.V2.Service;
+
+import com.RK8.V2.DTO.Gstr2BDTO;
+import com.RK8.V2.DTO.Money;
+import com.RK8.V2.DTO.PurchaseInvoiceDTO;
+import com.RK8.V2.Parser.InvoiceNormalizer;
+import com.RK8.V2.Parser.InvoiceNormalizer.InvoiceForms;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Lookup structures over one GSTR-2B upload, shared by the match strategies. Records are added
+// one at a time, so a parser can index rows as it reads them instead of handing over a list to
+// be walked again. Read-only once sealed, apart from the supplier indexes which are created on
+// first use.
+public final class MatchContext {
+    private final InvoiceNormalizer normalizer;
+    private final InvoiceNormalizer.Memo invoices;
+    private final List<Gstr2BDTO> records = new ArrayList<>();
+    // "GSTIN|INV", "INV|inv" and "NUM|digits" keys -> 2B records
+    private final Map<String, List<Gstr2BDTO>> gstr2bMap = new HashMap<>();
+    // Each record's exact-key list, by 2B position
+    private final List<List<Gstr2BDTO>> exactGroups = new ArrayList<>();
+    // 2B position of each record, by identity (DTOs with equal fields are still distinct rows)
+    private final Map<Gstr2BDTO, Integer> positions = new IdentityHashMap<>();
+    private final Map<String, SupplierIndex> suppliers = new ConcurrentHashMap<>();
+    private Map<String, List<Gstr2BDTO>> gstinIndex;
+
+    public MatchContext(InvoiceNormalizer normalizer) {
+        this.normalizer = normalizer;
+        this.invoices = normalizer.newMemo();
+    }
+
+    MatchContext(InvoiceNormalizer normalizer, List<Gstr2BDTO> gstr2bList) {
+        this(normalizer);
+        gstr2bList.forEach(this::add);
+    }
+
+    // Indexes one 2B record; its position is the number of records added before it
+    public void add(Gstr2BDTO g) {
+        if (gstinIndex != null) {
+            throw new IllegalStateException("2B index is already in use");
+        }
+        positions.put(g, records.size());
+        records.add(g);
+
+        // Multiple keys for fuzzy matching
+        InvoiceForms inv = invoices.forms(g.getInvoiceNo());
+        List<Gstr2BDTO> exact = gstr2bMap.computeIfAbsent(exactKey(normalizer.normalizeGstin(g.getSupplierGstin()), inv), k -> new ArrayList<>());
+        exact.add(g);
+        exactGroups.add(exact);
+        gstr2bMap.computeIfAbsent(invoiceOnlyKey(inv), k -> new ArrayList<>()).add(g);
+        gstr2bMap.computeIfAbsent(numericKey(inv), k -> new ArrayList<>()).add(g);
+    }
+
+    // Called before matching; no records can be added afterwards
+    synchronized void seal() {
+        if (gstinIndex == null) {
+            // Secondary index: supplier GSTIN -> candidates, for same-GSTIN matching
+            gstinIndex = buildGstinIndex(gstr2bMap);
+        }
+    }
+
+    // Groups the lookup lists by the part of the key before the first '|', walking the map
+    // once in its own iteration order. Each GSTIN list therefore holds exactly what the old
+    // startsWith(gstin + "|") scan over gstr2bMap produced, in the same order.
+    private static Map<String, List<Gstr2BDTO>> buildGstinIndex(Map<String, List<Gstr2BDTO>> gstr2bMap) {
+        Map<String, List<Gstr2BDTO>> index = new HashMap<>();
+        for (Map.Entry<String, List<Gstr2BDTO>> e : gstr2bMap.entrySet()) {
+            String key = e.getKey();
+            String prefix = key.substring(0, key.indexOf('|'));
+            index.computeIfAbsent(prefix, k -> new ArrayList<>()).addAll(e.getValue());
+        }
+        return index;
+    }
+
+    // All records in the order they were added
+    public List<Gstr2BDTO> records() {
+        return Collections.unmodifiableList(records);
+    }
+
+    public int size() {
+        return records.size();
+    }
+
+    // Every record sharing the exact GSTIN + invoice key of the record at this position
+    public List<Gstr2BDTO> exactGroup(int position) {
+        return exactGroups.get(position);
+    }
+
+    public InvoiceForms invoice(String invoiceNo) {
+        return invoices.forms(invoiceNo);
+    }
+
+    public InvoiceForms invoiceOf(PurchaseInvoiceDTO purchase) {
+        return invoices.forms(purchase.getInvoiceNo());
+    }
+
+    public String gstin(String raw) {
+        return normalizer.normalizeGstin(raw);
+    }
+
+    public String gstinOf(PurchaseInvoiceDTO purchase) {
+        return normalizer.normalizeGstin(purchase.getSupplierGstin());
+    }
+
+    public int position(Gstr2BDTO record) {
+        return positions.get(record);
+    }
+
+    public List<Gstr2BDTO> get(String key) {
+        return gstr2bMap.getOrDefault(key, Collections.emptyList());
+    }
+
+    public List<Gstr2BDTO> sameGstin(String gstin) {
+        return gstinIndex.getOrDefault(gstin, Collections.emptyList());
+    }
+
+    // Built on first use; in a parallel run each GSTIN belongs to one partition task
+    public SupplierIndex supplier(String gstin) {
+        return suppliers.computeIfAbsent(gstin, g -> new SupplierIndex(sameGstin(g), invoices));
+    }
+
+    // Key creation methods
+    public static String exactKey(String normalizedGstin, InvoiceForms invoice) {
+        return normalizedGstin + "|" + invoice.clean;
+    }
+
+    public static String invoiceOnlyKey(InvoiceForms invoice) {
+        return "INV|" + invoice.clean;
+    }
+
+    public static String numericKey(InvoiceForms invoice) {
+        return "NUM|" + invoice.numeric;
+    }
+
+    public static boolean isInvoiceFuzzyMatch(InvoiceForms inv1, InvoiceForms inv2) {
+        if (inv1.clean.equals(inv2.clean)) return true;
+
+        // Try with common substitutions (O/0, I/1, L/1)
+        if (inv1.folded.equals(inv2.folded)) return true;
+
+        // Try removing prefixes/suffixes
+        return inv1.base.equals(inv2.base);
+    }
+
+    public static Gstr2BDTO findClosestTaxMatch(List<Gstr2BDTO> candidates, Money targetTax,
+                                                LocalDate targetDate, int windowDays) {
+        // First candidate inside the date window with the smallest difference wins, same as Stream.min
+        Gstr2BDTO best = null;
+        long bestDiff = Long.MAX_VALUE;
+        for (Gstr2BDTO c : candidates) {
+            if (!MatchWindows.within(targetDate, c.getInvoiceDate(), windowDays)) continue;
+            long diff = c.getTotalTax().distance(targetTax);
+            if (diff < bestDiff) {
+                best = c;
+                bestDiff = diff;
+            }
+        }
+        return best;
+    }
+}
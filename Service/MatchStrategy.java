@@ -0,0 +1,25 @@
+package com.RK8.V2.Service;
+
+import com.RK8.V2.DTO.Gstr2BDTO;
+import com.RK8.V2.DTO.PurchaseInvoiceDTO;
+
+import java.util.function.Consumer;
+
+// One step of the matching chain. Implementations are Spring components looked up by name;
+// the chain order decides the fall-through order in INDEPENDENT mode and the pair priority
+// (tier) in the one-to-one assignment modes.
+public interface MatchStrategy {
+    // Name used in reconcile.strategies and the "strategies" request parameter
+    String name();
+
+    // True when every candidate belongs to the purchase's own supplier GSTIN, so the strategy
+    // can run inside the per-supplier partitions
+    boolean sameSupplier();
+
+    // INDEPENDENT mode: this strategy's best candidate, or null to fall through to the next one
+    Gstr2BDTO findMatch(PurchaseInvoiceDTO purchase, MatchContext context, StrategyCounters counters);
+
+    // Assignment modes: every acceptable candidate; the engine scores and resolves them
+    void collectCandidates(PurchaseInvoiceDTO purchase, MatchContext context, StrategyCounters counters,
+                           Consumer<Gstr2BDTO> sink);
+}
@@ -0,0 +1,41 @@
+package com.RK8.V2.Service;
+
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+// Date window, in days either side of the purchase date, that each matching strategy accepts.
+// A negative window means the strategy ignores dates.
+@Getter
+@Component
+public class MatchWindows {
+    private final int exactDays;
+    private final int fuzzyDays;
+    private final int editsDays;
+    private final int invoiceOnlyDays;
+    private final int numericDays;
+    private final int amountDays;
+
+    public MatchWindows(
+            @Value("${reconcile.window.exact-days:-1}") int exactDays,
+            @Value("${reconcile.window.fuzzy-days:30}") int fuzzyDays,
+            @Value("${reconcile.window.edits-days:30}") int editsDays,
+            @Value("${reconcile.window.invoice-only-days:-1}") int invoiceOnlyDays,
+            @Value("${reconcile.window.numeric-days:-1}") int numericDays,
+            @Value("${reconcile.window.amount-days:30}") int amountDays) {
+        this.exactDays = exactDays;
+        this.fuzzyDays = fuzzyDays;
+        this.editsDays = editsDays;
+        this.invoiceOnlyDays = invoiceOnlyDays;
+        this.numericDays = numericDays;
+        this.amountDays = amountDays;
+    }
+
+    public static boolean within(LocalDate date1, LocalDate date2, int windowDays) {
+        if (windowDays < 0) return true;
+        if (date1 == null || date2 == null) return false;
+        return Math.abs(date1.toEpochDay() - date2.toEpochDay()) <= windowDays;
+    }
+}
@@ -1,249 +1,495 @@
 package com.RK8.V2.Service;
 
 import com.RK8.V2.DTO.Gstr2BDTO;
+import com.RK8.V2.DTO.MatchFlag;
+import com.RK8.V2.DTO.Money;
 import com.RK8.V2.DTO.PurchaseInvoiceDTO;
+import com.RK8.V2.DTO.ReconciliationOutcome;
 import com.RK8.V2.DTO.ReconciliationResult;
+import com.RK8.V2.DTO.ReconciliationStatus;
+import com.RK8.V2.DTO.StrategyStats;
+import com.RK8.V2.Parser.InvoiceNormalizer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
 import java.time.YearMonth;
-import java.time.LocalDate;
 
 
+// Reconciles a purchase register against GSTR-2B.
+// Matching runs an ordered chain of MatchStrategy components (reconcile.strategies, or the
+// "strategies" request parameter). By default every 2B record is claimed by at most one
+// purchase: candidate pairs of the leading same-supplier strategies are scored per supplier
+// GSTIN and resolved one-to-one (InvoiceAssignment), then the rest of the chain competes for the
+// 2B records still free. In INDEPENDENT mode each purchase takes the first strategy that finds
+// a candidate, as the engine originally did.
+// Large runs resolve supplier partitions on a ForkJoin pool; results are merged by purchase
+// position, so the output is the same as the sequential engine's.
 @Service
-public class Purchase2BReconciliationService {
-    private static final BigDecimal TOLERANCE = new BigDecimal("1.00"); // ₹1 tolerance
+public class Purchase2BReconciliationService implements DisposableBean {
+    static final long TOLERANCE_PAISE = 100; // ₹1 tolerance
+    // Purchases matched before their results go to the sink, in INDEPENDENT mode
+    private static final int MATCH_BLOCK = 4096;
+
+    private final InvoiceNormalizer invoiceNormalizer;
+    private final Map<String, MatchStrategy> strategies = new LinkedHashMap<>();
+    private final List<String> defaultChain;
+    // Purchases + 2B records at which the GSTIN-partitioned parallel engine is used
+    private final int parallelThreshold;
+    private final AssignmentMode assignmentMode;
+    // Largest supplier partition (either side) solved exactly in OPTIMAL mode
+    private final int optimalMaxSize;
+    private final ForkJoinPool pool;
+    // Totals since startup, per strategy name
+    private final Map<String, StrategyCounters> totals = new ConcurrentHashMap<>();
+
+    public enum AssignmentMode {
+        // Each purchase takes its best candidate; a 2B record may be matched more than once
+        INDEPENDENT,
+        // One-to-one, best-scoring pairs first
+        GREEDY,
+        // One-to-one, minimum total cost for small partitions, greedy for the rest
+        OPTIMAL
+    }
+
+    public Purchase2BReconciliationService(
+            InvoiceNormalizer invoiceNormalizer,
+            List<MatchStrategy> matchStrategies,
+            @Value("${reconcile.strategies:exact,fuzzy,edits,invoice-only,numeric,amount}") String defaultChain,
+            @Value("${reconcile.parallel.threshold:5000}") int parallelThreshold,
+            @Value("${reconcile.assignment.mode:greedy}") String assignmentMode,
+            @Value("${reconcile.assignment.optimal-max-size:64}") int optimalMaxSize) {
+        this.invoiceNormalizer = invoiceNormalizer;
+        for (MatchStrategy strategy : matchStrategies) {
+            if (strategies.putIfAbsent(strategy.name(), strategy) != null) {
+                throw new IllegalStateException("Duplicate match strategy: " + strategy.name());
+            }
+        }
+        this.defaultChain = new ArrayList<>();
+        for (String name : defaultChain.split(",")) {
+            if (!name.trim().isEmpty()) this.defaultChain.add(name.trim());
+        }
+        chain(this.defaultChain);
+        this.parallelThreshold = parallelThreshold;
+        this.assignmentMode = AssignmentMode.valueOf(assignmentMode.trim().toUpperCase());
+        this.optimalMaxSize = optimalMaxSize;
+        this.pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    @Override
+    public void destroy() {
+        pool.shutdownNow();
+    }
 
     public List<ReconciliationResult> reconcile(
             List<PurchaseInvoiceDTO> purchases,
             List<Gstr2BDTO> gstr2bList
     ) {
-        List<ReconciliationResult> results = new ArrayList<>();
+        return reconcile(purchases, gstr2bList, null).getResults();
+    }
+
+    // strategyNames overrides the configured chain for this run; null or empty keeps it
+    public ReconciliationOutcome reconcile(
+            List<PurchaseInvoiceDTO> purchases,
+            List<Gstr2BDTO> gstr2bList,
+            List<String> strategyNames
+    ) {
+        return reconcile(purchases, new MatchContext(invoiceNormalizer, gstr2bList), strategyNames);
+    }
+
+    // For a 2B side indexed while it was parsed (UploadParsingService)
+    public List<ReconciliationResult> reconcile(
+            List<PurchaseInvoiceDTO> purchases,
+            MatchContext gstr2bIndex
+    ) {
+        return reconcile(purchases, gstr2bIndex, null).getResults();
+    }
 
-        // Build lookup structures
-        Map<String, List<Gstr2BDTO>> gstr2bMap = new HashMap<>();
-        for (Gstr2BDTO g : gstr2bList) {
-            // Multiple keys for fuzzy matching
-            String exactKey = createExactKey(g.getSupplierGstin(), g.getInvoiceNo());
-            String invoiceOnlyKey = createInvoiceOnlyKey(g.getInvoiceNo());
-            String numericKey = createNumericKey(g.getInvoiceNo());
+    public ReconciliationOutcome reconcile(
+            List<PurchaseInvoiceDTO> purchases,
+            MatchContext gstr2bIndex,
+            List<String> strategyNames
+    ) {
+        List<ReconciliationResult> results = new ArrayList<>(purchases.size() + gstr2bIndex.size());
+        List<StrategyStats> stats = reconcile(purchases, gstr2bIndex, strategyNames, results::add);
+        return new ReconciliationOutcome(results, stats);
+    }
 
-            gstr2bMap.computeIfAbsent(exactKey, k -> new ArrayList<>()).add(g);
-            gstr2bMap.computeIfAbsent(invoiceOnlyKey, k -> new ArrayList<>()).add(g);
-            gstr2bMap.computeIfAbsent(numericKey, k -> new ArrayList<>()).add(g);
+    public List<StrategyStats> reconcile(
+            List<PurchaseInvoiceDTO> purchases,
+            List<Gstr2BDTO> gstr2bList,
+            List<String> strategyNames,
+            Consumer<ReconciliationResult> sink
+    ) {
+        return reconcile(purchases, new MatchContext(invoiceNormalizer, gstr2bList), strategyNames, sink);
+    }
+
+    // Streaming variant: results go to the sink in register order, then the 2B records nobody
+    // claimed; no result is retained here, so callers that write or aggregate rows need not hold
+    // the whole result set. The matching state is held, though: the 2B index, and the matches of
+    // one block of purchases in INDEPENDENT mode or of every purchase in the one-to-one modes,
+    // whose results only reach the sink once the assignment is complete.
+    public List<StrategyStats> reconcile(
+            List<PurchaseInvoiceDTO> purchases,
+            MatchContext context,
+            List<String> strategyNames,
+            Consumer<ReconciliationResult> sink
+    ) {
+        List<MatchStrategy> chain = chain(strategyNames == null || strategyNames.isEmpty() ? defaultChain : strategyNames);
+        StrategyCounters[] counters = new StrategyCounters[chain.size()];
+        for (int k = 0; k < counters.length; k++) {
+            counters[k] = new StrategyCounters(chain.get(k).name());
         }
 
+        context.seal();
+        List<Gstr2BDTO> gstr2bList = context.records();
+
         // Phase 1: Match purchase invoices with 2B
-        Set<String> matched2BKeys = new HashSet<>();
+        boolean parallel = purchases.size() + gstr2bList.size() >= parallelThreshold;
+        BitSet matched2B = new BitSet(gstr2bList.size());
+        if (assignmentMode == AssignmentMode.INDEPENDENT) {
+            // No purchase's match depends on another's, so each block of the register goes to the
+            // sink as soon as it is matched
+            for (int from = 0; from < purchases.size(); from += MATCH_BLOCK) {
+                List<PurchaseInvoiceDTO> block = purchases.subList(from, Math.min(from + MATCH_BLOCK, purchases.size()));
+                Gstr2BDTO[] matches = matchIndependently(block, context, chain, counters, parallel);
+                markMatchedByKey(matches, context, matched2B);
+                emitPurchases(block, matches, context, sink);
+            }
+        } else {
+            // One-to-one assignment weighs every purchase's candidates against each other, so no
+            // purchase is decided until all of them have been scored
+            Gstr2BDTO[] matches = assignOneToOne(purchases, gstr2bList, context, chain, counters, parallel, matched2B);
+            emitPurchases(purchases, matches, context, sink);
+        }
 
-        for (PurchaseInvoiceDTO p : purchases) {
-            BigDecimal purchaseTax = calculateTax(p.getIgst(), p.getCgst(), p.getSgst());
-            YearMonth month = YearMonth.from(p.getInvoiceDate());
+        // Phase 2: Find invoices in 2B not matched to purchase
+        for (int j = matched2B.nextClearBit(0); j < gstr2bList.size(); j = matched2B.nextClearBit(j + 1)) {
+            Gstr2BDTO g = gstr2bList.get(j);
+            Money gstr2bTax = g.getTotalTax();
+
+            sink.accept(new ReconciliationResult(
+                    g.getSupplierGstin(),
+                    g.getInvoiceNo(),
+                    ReconciliationStatus.MISSING_IN_PURCHASE,
+                    Money.ZERO,
+                    gstr2bTax,
+                    gstr2bTax,
+                    "Invoice present in GSTR-2B but not in purchase register",
+                    YearMonth.from(g.getInvoiceDate())
+            ));
+        }
 
-            // Try multiple matching strategies in order of confidence
-            Gstr2BDTO match = findBestMatch(p, gstr2bMap, purchaseTax);
+        return finish(counters);
+    }
+
+    // One result per purchase, in the order given; matches[i] is purchases[i]'s 2B record or null
+    private void emitPurchases(List<PurchaseInvoiceDTO> purchases, Gstr2BDTO[] matches, MatchContext context,
+                               Consumer<ReconciliationResult> sink) {
+        for (int i = 0; i < purchases.size(); i++) {
+            PurchaseInvoiceDTO p = purchases.get(i);
+            Gstr2BDTO match = matches[i];
+            Money purchaseTax = p.getTotalTax();
+            YearMonth month = YearMonth.from(p.getInvoiceDate());
 
             if (match != null) {
-                BigDecimal gstr2bTax = calculateTax(match.getIgst(), match.getCgst(), match.getSgst());
-                matched2BKeys.add(createExactKey(match.getSupplierGstin(), match.getInvoiceNo()));
+                Money gstr2bTax = match.getTotalTax();
+                int flags = matchFlags(p, match, context);
 
                 if (isTaxMatch(purchaseTax, gstr2bTax)) {
-                    results.add(new ReconciliationResult(
+                    sink.accept(new ReconciliationResult(
                             p.getSupplierGstin(),
                             p.getInvoiceNo(),
-                            "MATCHED",
+                            ReconciliationStatus.MATCHED,
                             purchaseTax,
                             gstr2bTax,
-                            BigDecimal.ZERO,
+                            Money.ZERO,
                             buildRemarks(p, match, "Matched"),
-                            month
+                            month,
+                            flags
                     ));
                 } else {
-                    BigDecimal diff = purchaseTax.subtract(gstr2bTax).abs();
-                    String status = diff.compareTo(TOLERANCE) <= 0 ?
-                            "MATCHED_WITH_TOLERANCE" : "MISMATCH";
-
-                    results.add(new ReconciliationResult(
+                    Money diff = purchaseTax.minus(gstr2bTax).abs();
+                    ReconciliationStatus status = ReconciliationStatus.MISMATCH;
+                    if (diff.getPaise() <= TOLERANCE_PAISE) {
+                        status = ReconciliationStatus.MATCHED_WITH_TOLERANCE;
+                        flags |= MatchFlag.WITHIN_TOLERANCE.bit();
+                    }
+
+                    sink.accept(new ReconciliationResult(
                             p.getSupplierGstin(),
                             p.getInvoiceNo(),
                             status,
                             purchaseTax,
                             gstr2bTax,
-                            purchaseTax.subtract(gstr2bTax).max(BigDecimal.ZERO),
+                            purchaseTax.minus(gstr2bTax).max(Money.ZERO),
                             buildRemarks(p, match, "Tax amount differs by " + diff),
-                            month
+                            month,
+                            flags
                     ));
                 }
             } else {
                 // No match found
-                results.add(new ReconciliationResult(
+                sink.accept(new ReconciliationResult(
                         p.getSupplierGstin(),
                         p.getInvoiceNo(),
-                        "MISSING_IN_2B",
+                        ReconciliationStatus.MISSING_IN_2B,
                         purchaseTax,
-                        BigDecimal.ZERO,
+                        Money.ZERO,
                         purchaseTax,
                         "No matching invoice found in GSTR-2B",
                         month
                 ));
             }
         }
+    }
 
-        // Phase 2: Find invoices in 2B not matched to purchase
-        for (Gstr2BDTO g : gstr2bList) {
-            String key = createExactKey(g.getSupplierGstin(), g.getInvoiceNo());
-            if (!matched2BKeys.contains(key)) {
-                BigDecimal gstr2bTax = calculateTax(g.getIgst(), g.getCgst(), g.getSgst());
-
-                results.add(new ReconciliationResult(
-                        g.getSupplierGstin(),
-                        g.getInvoiceNo(),
-                        "MISSING_IN_PURCHASE",
-                        BigDecimal.ZERO,
-                        gstr2bTax,
-                        gstr2bTax,
-                        "Invoice present in GSTR-2B but not in purchase register",
-                        YearMonth.from(g.getInvoiceDate())
-                ));
+    // Legacy bookkeeping: a 2B record counts as matched when any match shares its exact key
+    private void markMatchedByKey(Gstr2BDTO[] matches, MatchContext context, BitSet matched2B) {
+        for (Gstr2BDTO match : matches) {
+            if (match == null || matched2B.get(context.position(match))) continue;
+            for (Gstr2BDTO g : context.exactGroup(context.position(match))) {
+                matched2B.set(context.position(g));
             }
         }
-
-        return results;
     }
 
-    private Gstr2BDTO findBestMatch(PurchaseInvoiceDTO purchase,
-                                    Map<String, List<Gstr2BDTO>> gstr2bMap,
-                                    BigDecimal purchaseTax) {
-        String purchaseGstin = normalizeGstin(purchase.getSupplierGstin());
-        String purchaseInvoice = normalizeInvoice(purchase.getInvoiceNo());
-        LocalDate purchaseDate = purchase.getInvoiceDate();
-
-        // Strategy 1: Exact match (GSTIN + Invoice)
-        String exactKey = createExactKey(purchaseGstin, purchaseInvoice);
-        List<Gstr2BDTO> exactMatches = gstr2bMap.getOrDefault(exactKey, new ArrayList<>());
-        if (!exactMatches.isEmpty()) {
-            return findClosestTaxMatch(exactMatches, purchaseTax);
+    // Cumulative per-strategy work since startup, in configured chain order
+    public List<StrategyStats> getStrategyMetrics() {
+        List<String> names = new ArrayList<>(defaultChain);
+        for (String name : strategies.keySet()) {
+            if (!names.contains(name)) names.add(name);
         }
+        List<StrategyStats> stats = new ArrayList<>();
+        for (int k = 0; k < names.size(); k++) {
+            StrategyCounters total = totals.get(names.get(k));
+            if (total != null) stats.add(total.snapshot(k));
+        }
+        return stats;
+    }
 
-        // Strategy 2: Same GSTIN, fuzzy invoice match
-        String gstinOnlyKey = purchaseGstin + "|*";
-        List<Gstr2BDTO> sameGstin = gstr2bMap.entrySet().stream()
-                .filter(e -> e.getKey().startsWith(purchaseGstin + "|"))
-                .flatMap(e -> e.getValue().stream())
-                .collect(Collectors.toList());
+    // Same check reconcile() makes on a strategies override, for callers that want to reject a
+    // request before doing any work; null or empty is the configured chain
+    public void checkStrategies(List<String> strategyNames) {
+        if (strategyNames != null) chain(strategyNames);
+    }
 
-        for (Gstr2BDTO candidate : sameGstin) {
-            if (isInvoiceFuzzyMatch(purchaseInvoice, normalizeInvoice(candidate.getInvoiceNo()))) {
-                // Also check date proximity (±30 days)
-                if (isDateClose(purchaseDate, candidate.getInvoiceDate(), 30)) {
-                    return candidate;
-                }
+    private List<MatchStrategy> chain(List<String> names) {
+        List<MatchStrategy> chain = new ArrayList<>(names.size());
+        for (String name : names) {
+            MatchStrategy strategy = strategies.get(name.trim());
+            if (strategy == null) {
+                throw new IllegalArgumentException("Unknown match strategy: " + name
+                        + " (available: " + String.join(", ", strategies.keySet()) + ")");
             }
+            chain.add(strategy);
         }
+        return chain;
+    }
 
-        // Strategy 3: Invoice only match (ignore GSTIN)
-        String invoiceOnlyKey = createInvoiceOnlyKey(purchaseInvoice);
-        List<Gstr2BDTO> invoiceMatches = gstr2bMap.getOrDefault(invoiceOnlyKey, new ArrayList<>());
-        if (!invoiceMatches.isEmpty()) {
-            return findClosestTaxMatch(invoiceMatches, purchaseTax);
-        }
+    // Length of the leading run of same-supplier strategies; those can run per partition
+    private int sameSupplierPrefix(List<MatchStrategy> chain) {
+        int k = 0;
+        while (k < chain.size() && chain.get(k).sameSupplier()) k++;
+        return k;
+    }
 
-        // Strategy 4: Numeric invoice match
-        String numericKey = createNumericKey(purchaseInvoice);
-        List<Gstr2BDTO> numericMatches = gstr2bMap.getOrDefault(numericKey, new ArrayList<>());
-        if (!numericMatches.isEmpty()) {
-            return findClosestTaxMatch(numericMatches, purchaseTax);
+    private List<StrategyStats> finish(StrategyCounters[] counters) {
+        List<StrategyStats> stats = new ArrayList<>(counters.length);
+        for (int k = 0; k < counters.length; k++) {
+            stats.add(counters[k].snapshot(k));
+            String name = stats.get(k).getStrategy();
+            totals.computeIfAbsent(name, StrategyCounters::new).add(counters[k]);
         }
+        return stats;
+    }
 
+    // First strategy in chain[from, to) that finds a candidate
+    private Gstr2BDTO findMatch(PurchaseInvoiceDTO purchase, MatchContext context, List<MatchStrategy> chain,
+                                StrategyCounters[] counters, int from, int to) {
+        for (int k = from; k < to; k++) {
+            long start = System.nanoTime();
+            Gstr2BDTO match = chain.get(k).findMatch(purchase, context, counters[k]);
+            counters[k].invoked(System.nanoTime() - start);
+            if (match != null) {
+                counters[k].hit();
+                return match;
+            }
+        }
         return null;
     }
 
-    private boolean isInvoiceFuzzyMatch(String inv1, String inv2) {
-        if (inv1.equals(inv2)) return true;
+    private Gstr2BDTO[] matchIndependently(List<PurchaseInvoiceDTO> purchases, MatchContext context,
+                                           List<MatchStrategy> chain, StrategyCounters[] counters, boolean parallel) {
+        Gstr2BDTO[] matches = new Gstr2BDTO[purchases.size()];
+        if (!parallel) {
+            for (int i = 0; i < matches.length; i++) {
+                matches[i] = findMatch(purchases.get(i), context, chain, counters, 0, chain.size());
+            }
+            return matches;
+        }
 
-        // Try with common substitutions
-        String norm1 = inv1.replace("O", "0").replace("I", "1").replace("L", "1");
-        String norm2 = inv2.replace("O", "0").replace("I", "1").replace("L", "1");
-        if (norm1.equals(norm2)) return true;
+        // Same-supplier strategies only look at the purchase's own supplier, so partitions are independent
+        int split = sameSupplierPrefix(chain);
+        List<List<Integer>> partitions = partitionByGstin(purchases);
+        pool.invoke(new PartitionTask(partitions, 0, partitions.size(), partition -> {
+            for (int i : partition) {
+                matches[i] = findMatch(purchases.get(i), context, chain, counters, 0, split);
+            }
+        }));
 
-        // Try removing prefixes/suffixes
-        String base1 = extractBaseInvoice(inv1);
-        String base2 = extractBaseInvoice(inv2);
-        return base1.equals(base2);
+        // The rest of the chain may cross supplier boundaries; resolve the leftovers in purchase order
+        for (int i = 0; i < matches.length; i++) {
+            if (matches[i] == null) {
+                matches[i] = findMatch(purchases.get(i), context, chain, counters, split, chain.size());
+            }
+        }
+        return matches;
     }
 
-    private String extractBaseInvoice(String invoice) {
-        // Remove common prefixes/suffixes
-        return invoice.replaceAll("^(FY25-26/|GST-25-26/|EP/2025-26/|JE/2025-26/|TIA/T/\\d+/24-25/)", "")
-                .replaceAll("/24-25$", "")
-                .replaceAll("/25-26$", "");
+    // Purchase positions grouped by normalised supplier GSTIN
+    private List<List<Integer>> partitionByGstin(List<PurchaseInvoiceDTO> purchases) {
+        Map<String, List<Integer>> byGstin = new LinkedHashMap<>();
+        for (int i = 0; i < purchases.size(); i++) {
+            String gstin = invoiceNormalizer.normalizeGstin(purchases.get(i).getSupplierGstin());
+            byGstin.computeIfAbsent(gstin, k -> new ArrayList<>()).add(i);
+        }
+        return new ArrayList<>(byGstin.values());
     }
 
-    private boolean isDateClose(LocalDate date1, LocalDate date2, int daysTolerance) {
-        if (date1 == null || date2 == null) return false;
-        return Math.abs(date1.toEpochDay() - date2.toEpochDay()) <= daysTolerance;
-    }
+    private static final class PartitionTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
 
-    private Gstr2BDTO findClosestTaxMatch(List<Gstr2BDTO> candidates, BigDecimal targetTax) {
-        return candidates.stream()
-                .min((c1, c2) -> {
-                    BigDecimal tax1 = calculateTax(c1.getIgst(), c1.getCgst(), c1.getSgst());
-                    BigDecimal tax2 = calculateTax(c2.getIgst(), c2.getCgst(), c2.getSgst());
-                    BigDecimal diff1 = tax1.subtract(targetTax).abs();
-                    BigDecimal diff2 = tax2.subtract(targetTax).abs();
-                    return diff1.compareTo(diff2);
-                })
-                .orElse(null);
-    }
+        private final List<List<Integer>> partitions;
+        private final int from;
+        private final int to;
+        private final Consumer<List<Integer>> work;
 
-    private String buildRemarks(PurchaseInvoiceDTO p, Gstr2BDTO g, String reason) {
-        StringBuilder remarks = new StringBuilder(reason);
-        remarks.append(" | Purchase GSTIN: ").append(p.getSupplierGstin());
-        remarks.append(" | 2B GSTIN: ").append(g.getSupplierGstin());
-        remarks.append(" | Purchase Inv: ").append(p.getInvoiceNo());
-        remarks.append(" | 2B Inv: ").append(g.getInvoiceNo());
-        return remarks.toString();
-    }
+        PartitionTask(List<List<Integer>> partitions, int from, int to, Consumer<List<Integer>> work) {
+            this.partitions = partitions;
+            this.from = from;
+            this.to = to;
+            this.work = work;
+        }
 
-    // Key creation methods
-    private String createExactKey(String gstin, String invoice) {
-        return normalizeGstin(gstin) + "|" + normalizeInvoice(invoice);
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                if (to > from) work.accept(partitions.get(from));
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(
+                    new PartitionTask(partitions, from, mid, work),
+                    new PartitionTask(partitions, mid, to, work));
+        }
     }
 
-    private String createInvoiceOnlyKey(String invoice) {
-        return "INV|" + normalizeInvoice(invoice);
-    }
+    private Gstr2BDTO[] assignOneToOne(List<PurchaseInvoiceDTO> purchases, List<Gstr2BDTO> gstr2bList,
+                                       MatchContext context, List<MatchStrategy> chain, StrategyCounters[] counters,
+                                       boolean parallel, BitSet taken) {
+        int[] assigned = new int[purchases.size()];
+        int[] assignedTier = new int[purchases.size()];
+        Arrays.fill(assigned, -1);
+        int split = sameSupplierPrefix(chain);
+
+        // Same-supplier pairs only involve that supplier's 2B records, so suppliers resolve
+        // independently of each other
+        List<List<Integer>> partitions = partitionByGstin(purchases);
+        Consumer<List<Integer>> assignSupplier = partition -> {
+            List<InvoiceAssignment.Pair> pairs = new ArrayList<>();
+            for (int i : partition) {
+                collectPairs(i, purchases.get(i), context, chain, counters, 0, split, null, pairs);
+            }
+            // BitSet is not thread-safe; a partition only claims its own supplier's records, so
+            // it resolves into a set of its own that is merged afterwards
+            BitSet claimed = new BitSet();
+            resolve(pairs, assigned, assignedTier, claimed);
+            synchronized (taken) {
+                taken.or(claimed);
+            }
+        };
+        if (parallel) {
+            pool.invoke(new PartitionTask(partitions, 0, partitions.size(), assignSupplier));
+        } else {
+            partitions.forEach(assignSupplier);
+        }
 
-    private String createNumericKey(String invoice) {
-        String numeric = invoice.replaceAll("[^0-9]", "");
-        return "NUM|" + (numeric.isEmpty() ? "0" : numeric);
+        // The rest of the chain competes for the 2B records still free
+        List<InvoiceAssignment.Pair> restPairs = new ArrayList<>();
+        for (int i = 0; i < assigned.length; i++) {
+            if (assigned[i] < 0) {
+                collectPairs(i, purchases.get(i), context, chain, counters, split, chain.size(), taken, restPairs);
+            }
+        }
+        resolve(restPairs, assigned, assignedTier, taken);
+
+        Gstr2BDTO[] matches = new Gstr2BDTO[purchases.size()];
+        for (int i = 0; i < assigned.length; i++) {
+            if (assigned[i] >= 0) {
+                matches[i] = gstr2bList.get(assigned[i]);
+                counters[assignedTier[i]].hit();
+            }
+        }
+        return matches;
     }
 
-    private BigDecimal calculateTax(BigDecimal igst, BigDecimal cgst, BigDecimal sgst) {
-        return safeAdd(safeAdd(igst, cgst), sgst);
+    // Every candidate of chain[from, to), scored with the strategy's position as its tier.
+    // Records already taken are skipped when taken is given.
+    private void collectPairs(int i, PurchaseInvoiceDTO purchase, MatchContext context, List<MatchStrategy> chain,
+                              StrategyCounters[] counters, int from, int to, BitSet taken,
+                              List<InvoiceAssignment.Pair> pairs) {
+        Money purchaseTax = purchase.getTotalTax();
+        for (int k = from; k < to; k++) {
+            int tier = k;
+            long start = System.nanoTime();
+            chain.get(k).collectCandidates(purchase, context, counters[k], c -> {
+                int j = context.position(c);
+                if (taken == null || !taken.get(j)) {
+                    pairs.add(new InvoiceAssignment.Pair(i, j, tier, c.getTotalTax().distance(purchaseTax)));
+                }
+            });
+            counters[k].invoked(System.nanoTime() - start);
+        }
     }
 
-    private boolean isTaxMatch(BigDecimal tax1, BigDecimal tax2) {
-        return tax1.compareTo(tax2) == 0;
+    private void resolve(List<InvoiceAssignment.Pair> pairs, int[] assigned, int[] assignedTier, BitSet taken) {
+        if (assignmentMode == AssignmentMode.OPTIMAL) {
+            InvoiceAssignment.optimal(pairs, assigned, assignedTier, taken, optimalMaxSize);
+        } else {
+            InvoiceAssignment.greedy(pairs, assigned, assignedTier, taken);
+        }
     }
 
-    private BigDecimal safeAdd(BigDecimal a, BigDecimal b) {
-        BigDecimal safeA = a == null ? BigDecimal.ZERO : a;
-        BigDecimal safeB = b == null ? BigDecimal.ZERO : b;
-        return safeA.add(safeB).setScale(2, RoundingMode.HALF_UP);
+    // Cross-supplier strategies can pair records filed under different GSTINs, and the fuzzy ones
+    // pair invoice numbers that are not written the same way
+    private int matchFlags(PurchaseInvoiceDTO p, Gstr2BDTO g, MatchContext context) {
+        int flags = 0;
+        if (!Objects.equals(context.gstinOf(p), context.gstin(g.getSupplierGstin()))) {
+            flags |= MatchFlag.GSTIN_MISMATCH.bit();
+        }
+        if (!Objects.equals(p.getInvoiceNo(), g.getInvoiceNo())) {
+            flags |= MatchFlag.INVOICE_NO_DIFFERS.bit();
+        }
+        return flags;
     }
 
-    private String normalizeGstin(String g) {
-        if (g == null) return "";
-        return g.trim().toUpperCase().replaceAll("[^A-Z0-9]", "");
+    private String buildRemarks(PurchaseInvoiceDTO p, Gstr2BDTO g, String reason) {
+        StringBuilder remarks = new StringBuilder(reason);
+        remarks.append(" | Purchase GSTIN: ").append(p.getSupplierGstin());
+        remarks.append(" | 2B GSTIN: ").append(g.getSupplierGstin());
+        remarks.append(" | Purchase Inv: ").append(p.getInvoiceNo());
+        remarks.append(" | 2B Inv: ").append(g.getInvoiceNo());
+        return remarks.toString();
     }
 
-    private String normalizeInvoice(String i) {
-        if (i == null) return "";
-        return i.trim().toUpperCase().replaceAll("\\s+", "");
+    private boolean isTaxMatch(Money tax1, Money tax2) {
+        return tax1.getPaise() == tax2.getPaise();
     }
 }
 
@@ -0,0 +1,325 @@
+package com.RK8.V2.Service;
+
+import com.RK8.V2.DTO.CachedRun;
+import com.RK8.V2.DTO.Gstr2BDTO;
+import com.RK8.V2.DTO.Money;
+import com.RK8.V2.DTO.ReconciliationResult;
+import com.RK8.V2.DTO.ReconciliationStatus;
+import com.RK8.V2.DTO.ReconciliationRun;
+import com.RK8.V2.Parser.InvoiceNormalizer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Reconciliation history in an embedded H2 database over plain JDBC: one summary row per run
+// (ReconciliationRun) plus its result rows, so dashboards can read past runs without
+// reconciling again. Writes happen on a single background thread, results in JDBC batches
+// inside one transaction per run. Amounts are stored in paise.
+@Service
+public class ReconciliationHistoryStore implements DisposableBean {
+    private static final int BATCH_SIZE = 1000;
+    private static final int WRITE_QUEUE_CAPACITY = 16;
+    private static final int GSTIN_LENGTH = 15;
+
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS reconciliation_run ("
+                    + "id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                    + "run_key VARCHAR(36), "
+                    + "client_gstin VARCHAR(15), "
+                    + "period VARCHAR(7), "
+                    + "run_at TIMESTAMP NOT NULL, "
+                    + "total_invoices BIGINT NOT NULL, "
+                    + "matched_count BIGINT NOT NULL, "
+                    + "mismatch_count BIGINT NOT NULL, "
+                    + "missing_count BIGINT NOT NULL, "
+                    + "itc_at_risk_paise BIGINT NOT NULL)",
+            "CREATE INDEX IF NOT EXISTS idx_run_client_period ON reconciliation_run (client_gstin, period)",
+            "CREATE INDEX IF NOT EXISTS idx_run_period ON reconciliation_run (period)",
+            "CREATE TABLE IF NOT EXISTS reconciliation_result ("
+                    + "run_id BIGINT NOT NULL, "
+                    + "seq INT NOT NULL, "
+                    + "supplier_gstin VARCHAR(32), "
+                    + "invoice_no VARCHAR(128), "
+                    + "status VARCHAR(32) NOT NULL, "
+                    + "purchase_tax_paise BIGINT NOT NULL, "
+                    + "gstr2b_tax_paise BIGINT NOT NULL, "
+                    + "itc_at_risk_paise BIGINT NOT NULL, "
+                    + "remarks VARCHAR, "
+                    + "invoice_month VARCHAR(7), "
+                    + "flags INT DEFAULT 0 NOT NULL, "
+                    + "PRIMARY KEY (run_id, seq), "
+                    + "FOREIGN KEY (run_id) REFERENCES reconciliation_run (id) ON DELETE CASCADE)",
+            // Databases created before match flags were recorded
+            "ALTER TABLE reconciliation_result ADD COLUMN IF NOT EXISTS flags INT DEFAULT 0 NOT NULL",
+            // Status pages are read in seq order
+            "DROP INDEX IF EXISTS idx_result_run_status",
+            "CREATE INDEX IF NOT EXISTS idx_result_run_status_seq ON reconciliation_result (run_id, status, seq)"
+    };
+
+    private final boolean enabled;
+    private final String url;
+    private final String user;
+    private final String password;
+    private final ExecutorService writer;
+    private final InvoiceNormalizer normalizer;
+
+    public ReconciliationHistoryStore(
+            @Value("${reconcile.history.enabled:true}") boolean enabled,
+            @Value("${reconcile.history.url:jdbc:h2:file:./data/reconcile-history}") String url,
+            @Value("${reconcile.history.user:sa}") String user,
+            @Value("${reconcile.history.password:}") String password,
+            InvoiceNormalizer normalizer) {
+        this.normalizer = normalizer;
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.enabled = enabled && createSchema();
+        // One writer keeps inserts ordered and the database single-writer; a full queue makes
+        // the caller write the run itself rather than dropping it
+        this.writer = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(WRITE_QUEUE_CAPACITY),
+                r -> {
+                    Thread t = new Thread(r, "reconcile-history-writer");
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    private boolean createSchema() {
+        try (Connection c = connect(); Statement st = c.createStatement()) {
+            for (String ddl : SCHEMA) {
+                st.execute(ddl);
+            }
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Reconciliation history disabled, could not open " + url + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private Connection connect() throws SQLException {
+        return DriverManager.getConnection(url, user, password);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Queues the run for writing; failures are logged, never thrown to the request
+    public void saveAsync(CachedRun run, String clientGstin, String period) {
+        if (!enabled) return;
+        writer.execute(() -> {
+            try {
+                save(run, clientGstin, period);
+            } catch (SQLException e) {
+                System.err.println("Could not persist run " + run.getRunId() + ": " + e.getMessage());
+            }
+        });
+    }
+
+    public ReconciliationRun save(CachedRun run, String clientGstin, String period) throws SQLException {
+        ReconciliationRun summary = summarize(run, clientGstin, period);
+
+        try (Connection c = connect()) {
+            c.setAutoCommit(false);
+            try {
+                try (PreparedStatement ps = c.prepareStatement(
+                        "INSERT INTO reconciliation_run (run_key, client_gstin, period, run_at, total_invoices, "
+                                + "matched_count, mismatch_count, missing_count, itc_at_risk_paise) "
+                                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                        Statement.RETURN_GENERATED_KEYS)) {
+                    ps.setString(1, summary.getRunId());
+                    ps.setString(2, summary.getClientGstin());
+                    ps.setString(3, summary.getPeriod());
+                    ps.setTimestamp(4, Timestamp.valueOf(summary.getRunAt()));
+                    ps.setLong(5, summary.getTotalInvoices());
+                    ps.setLong(6, summary.getMatchedCount());
+                    ps.setLong(7, summary.getMismatchCount());
+                    ps.setLong(8, summary.getMissingCount());
+                    ps.setLong(9, Money.of(summary.getItcAtRisk()).getPaise());
+                    ps.executeUpdate();
+                    try (ResultSet keys = ps.getGeneratedKeys()) {
+                        keys.next();
+                        summary.setId(keys.getLong(1));
+                    }
+                }
+
+                try (PreparedStatement ps = c.prepareStatement(
+                        "INSERT INTO reconciliation_result (run_id, seq, supplier_gstin, invoice_no, status, "
+                                + "purchase_tax_paise, gstr2b_tax_paise, itc_at_risk_paise, remarks, invoice_month, flags) "
+                                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+                    int seq = 0;
+                    for (ReconciliationResult r : run.getResults()) {
+                        ps.setLong(1, summary.getId());
+                        ps.setInt(2, seq++);
+                        ps.setString(3, r.getSupplierGstin());
+                        ps.setString(4, r.getInvoiceNo());
+                        ps.setString(5, r.getStatus().name());
+                        ps.setLong(6, r.getPurchaseTax().getPaise());
+                        ps.setLong(7, r.getGstr2bTax().getPaise());
+                        ps.setLong(8, r.getItcAtRisk().getPaise());
+                        ps.setString(9, r.getRemarks());
+                        ps.setString(10, r.getInvoiceMonth() != null ? r.getInvoiceMonth().toString() : null);
+                        ps.setInt(11, r.getFlags());
+                        ps.addBatch();
+                        if (seq % BATCH_SIZE == 0) ps.executeBatch();
+                    }
+                    ps.executeBatch();
+                }
+                c.commit();
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            }
+        }
+        return summary;
+    }
+
+    // Request-supplied client GSTIN as the client_gstin column holds it; null when not given.
+    // Validated up front, since a value that does not fit would only fail later on the writer.
+    public String clientGstin(String raw) {
+        if (raw == null || raw.trim().isEmpty()) return null;
+        String gstin = normalizer.normalizeGstin(raw);
+        if (gstin.length() != GSTIN_LENGTH) {
+            throw new IllegalArgumentException("clientGstin must be a " + GSTIN_LENGTH + "-character GSTIN: " + raw);
+        }
+        return gstin;
+    }
+
+    // Request-supplied period as yyyy-MM; null when not given
+    public String period(String raw) {
+        if (raw == null || raw.trim().isEmpty()) return null;
+        try {
+            return YearMonth.parse(raw.trim()).toString();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("period must be yyyy-MM: " + raw);
+        }
+    }
+
+    // Newest first; null filters match everything
+    public List<ReconciliationRun> findRuns(String clientGstin, String period, int limit) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT id, run_key, client_gstin, period, run_at, total_invoices, "
+                + "matched_count, mismatch_count, missing_count, itc_at_risk_paise FROM reconciliation_run WHERE 1 = 1");
+        List<String> args = new ArrayList<>();
+        if (clientGstin != null) {
+            sql.append(" AND client_gstin = ?");
+            args.add(clientGstin);
+        }
+        if (period != null) {
+            sql.append(" AND period = ?");
+            args.add(period);
+        }
+        sql.append(" ORDER BY run_at DESC, id DESC LIMIT ?");
+
+        List<ReconciliationRun> runs = new ArrayList<>();
+        if (!enabled) return runs;
+        try (Connection c = connect(); PreparedStatement ps = c.prepareStatement(sql.toString())) {
+            int i = 1;
+            for (String arg : args) ps.setString(i++, arg);
+            ps.setInt(i, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ReconciliationRun run = new ReconciliationRun();
+                    run.setId(rs.getLong(1));
+                    run.setRunId(rs.getString(2));
+                    run.setClientGstin(rs.getString(3));
+                    run.setPeriod(rs.getString(4));
+                    run.setRunAt(rs.getTimestamp(5).toLocalDateTime());
+                    run.setTotalInvoices(rs.getLong(6));
+                    run.setMatchedCount(rs.getLong(7));
+                    run.setMismatchCount(rs.getLong(8));
+                    run.setMissingCount(rs.getLong(9));
+                    run.setItcAtRisk(Money.ofPaise(rs.getLong(10)).toBigDecimal());
+                    runs.add(run);
+                }
+            }
+        }
+        return runs;
+    }
+
+    // Up to limit rows from seq fromSeq on, in the run's original order, added to results; status
+    // null returns every row. Returns the seq to continue from, or -1 once the last row is read.
+    public int findResults(long runId, String status, int fromSeq, int limit, List<ReconciliationResult> results)
+            throws SQLException {
+        String sql = "SELECT supplier_gstin, invoice_no, status, purchase_tax_paise, gstr2b_tax_paise, "
+                + "itc_at_risk_paise, remarks, invoice_month, flags, seq FROM reconciliation_result "
+                + "WHERE run_id = ? AND seq >= ?" + (status != null ? " AND status = ?" : "")
+                + " ORDER BY seq LIMIT ?";
+
+        if (!enabled) return -1;
+        try (Connection c = connect(); PreparedStatement ps = c.prepareStatement(sql)) {
+            int i = 1;
+            ps.setLong(i++, runId);
+            ps.setInt(i++, fromSeq);
+            if (status != null) ps.setString(i++, status);
+            // One row more than asked tells whether another page follows
+            ps.setInt(i, limit + 1);
+            try (ResultSet rs = ps.executeQuery()) {
+                for (int n = 0; rs.next(); n++) {
+                    if (n == limit) return rs.getInt(10);
+                    String month = rs.getString(8);
+                    results.add(new ReconciliationResult(
+                            rs.getString(1),
+                            rs.getString(2),
+                            ReconciliationStatus.valueOf(rs.getString(3)),
+                            Money.ofPaise(rs.getLong(4)),
+                            Money.ofPaise(rs.getLong(5)),
+                            Money.ofPaise(rs.getLong(6)),
+                            rs.getString(7),
+                            month != null ? YearMonth.parse(month) : null,
+                            rs.getInt(9)));
+                }
+            }
+        }
+        return -1;
+    }
+
+    static ReconciliationRun summarize(CachedRun cached, String clientGstin, String period) {
+        ResultAggregate totals = ResultAggregate.of(cached.getResults(), 0);
+        long matched = totals.getMatched();
+        long mismatch = totals.count(ReconciliationStatus.MISMATCH);
+
+        ReconciliationRun run = new ReconciliationRun();
+        run.setRunId(cached.getRunId());
+        run.setClientGstin(clientGstin);
+        run.setPeriod(period != null ? period : dominantMonth(cached.getGstr2bList()));
+        run.setRunAt(LocalDateTime.ofInstant(cached.getCreatedAt(), ZoneId.systemDefault()));
+        run.setTotalInvoices((long) cached.getResults().size());
+        run.setMatchedCount(matched);
+        run.setMismatchCount(mismatch);
+        run.setMissingCount(totals.getCount() - matched - mismatch);
+        run.setItcAtRisk(totals.getItcAtRisk().toBigDecimal());
+        return run;
+    }
+
+    // The return period when none is given: the month most 2B invoices fall in
+    private static String dominantMonth(List<Gstr2BDTO> gstr2bList) {
+        Map<YearMonth, Integer> counts = new HashMap<>();
+        for (Gstr2BDTO g : gstr2bList) {
+            if (g.getInvoiceDate() != null) counts.merge(YearMonth.from(g.getInvoiceDate()), 1, Integer::sum);
+        }
+        return counts.entrySet().stream()
+                .max(Map.Entry.<YearMonth, Integer>comparingByValue().thenComparing(Map.Entry.comparingByKey()))
+                .map(e -> e.getKey().toString())
+                .orElse(null);
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        // Let queued runs finish writing
+        writer.shutdown();
+        writer.awaitTermination(30, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,193 @@
+package com.RK8.V2.Service;
+
+import com.RK8.V2.DTO.JobStatus;
+import com.RK8.V2.DTO.ParsedUploads;
+import com.RK8.V2.DTO.ReconciliationOutcome;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs reconciliations in the background so a large upload does not hold a request thread for
+// the whole parse and match. Uploads are spooled to temp files (the multipart parts go away
+// with the request), then parsed and matched on a fixed pool with a bounded queue; a full
+// queue rejects the submission instead of piling up work. Finished runs go to the run
+// registry, so their reports are fetched like any other cached run; they are cached for at
+// least as long as the job's status is kept.
+@Service
+public class ReconciliationJobService implements DisposableBean {
+    private final UploadParsingService uploadParsingService;
+    private final Purchase2BReconciliationService reconciliationService;
+    private final ReconciliationRunRegistry runRegistry;
+    private final ThreadPoolExecutor executor;
+    // How long a finished job's status stays queryable
+    private final Duration retention;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    public enum Phase {
+        QUEUED(0), PARSING(10), MATCHING(45), CACHING(95), DONE(100), FAILED(100);
+
+        final int progress;
+
+        Phase(int progress) {
+            this.progress = progress;
+        }
+    }
+
+    private static final class Job {
+        final String id = UUID.randomUUID().toString();
+        final List<String> strategies;
+        final String clientGstin;
+        final String period;
+        final Path purchaseFile;
+        final Path gstr2bFile;
+        final Instant submittedAt = Instant.now();
+        volatile Phase phase = Phase.QUEUED;
+        volatile String runId;
+        volatile String error;
+        volatile Instant startedAt;
+        volatile Instant finishedAt;
+
+        Job(List<String> strategies, String clientGstin, String period, Path purchaseFile, Path gstr2bFile) {
+            this.strategies = strategies;
+            this.clientGstin = clientGstin;
+            this.period = period;
+            this.purchaseFile = purchaseFile;
+            this.gstr2bFile = gstr2bFile;
+        }
+
+        JobStatus status() {
+            return new JobStatus(id, phase.name(), phase.progress, runId, error, submittedAt, startedAt, finishedAt);
+        }
+    }
+
+    public ReconciliationJobService(
+            UploadParsingService uploadParsingService,
+            Purchase2BReconciliationService reconciliationService,
+            ReconciliationRunRegistry runRegistry,
+            @Value("${reconcile.jobs.workers:2}") int workers,
+            @Value("${reconcile.jobs.queue-limit:8}") int queueLimit,
+            @Value("${reconcile.jobs.retention-minutes:60}") long retentionMinutes) {
+        this.uploadParsingService = uploadParsingService;
+        this.reconciliationService = reconciliationService;
+        this.runRegistry = runRegistry;
+        this.retention = Duration.ofMinutes(retentionMinutes);
+
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                workers, workers, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueLimit),
+                r -> {
+                    Thread t = new Thread(r, "reconcile-job-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    // Throws RejectedExecutionException when the queue is full
+    public JobStatus submit(MultipartFile purchaseFile, MultipartFile gstr2bFile, List<String> strategies,
+                            String clientGstin, String period) throws IOException {
+        if (purchaseFile == null || gstr2bFile == null) {
+            throw new IllegalArgumentException("Both purchaseFile and gstr2bFile are required");
+        }
+        // An unknown strategy would only fail the job after the uploads were spooled and queued
+        reconciliationService.checkStrategies(strategies);
+        purgeFinished();
+
+        Path purchase = spool(purchaseFile);
+        Path gstr2b;
+        try {
+            gstr2b = spool(gstr2bFile);
+        } catch (IOException e) {
+            deleteQuietly(purchase);
+            throw e;
+        }
+
+        Job job = new Job(strategies, clientGstin, period, purchase, gstr2b);
+        jobs.put(job.id, job);
+        try {
+            executor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            deleteQuietly(purchase);
+            deleteQuietly(gstr2b);
+            throw e;
+        }
+        return job.status();
+    }
+
+    // null when the job is unknown or its status has been purged
+    public JobStatus status(String jobId) {
+        Job job = jobs.get(jobId);
+        return job == null ? null : job.status();
+    }
+
+    private void run(Job job) {
+        job.startedAt = Instant.now();
+        try {
+            job.phase = Phase.PARSING;
+            ParsedUploads uploads = uploadParsingService.parse(
+                    new FileSystemResource(job.purchaseFile), new FileSystemResource(job.gstr2bFile));
+
+            job.phase = Phase.MATCHING;
+            ReconciliationOutcome outcome = reconciliationService.reconcile(
+                    uploads.getPurchases(), uploads.getGstr2bIndex(), job.strategies);
+
+            job.phase = Phase.CACHING;
+            // Cached for as long as this job's status points at it
+            job.runId = runRegistry.register(uploads, outcome, job.clientGstin, job.period, retention).getRunId();
+            job.phase = Phase.DONE;
+        } catch (Exception e) {
+            job.error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            job.phase = Phase.FAILED;
+            System.err.println("Reconciliation job " + job.id + " failed: " + job.error);
+            e.printStackTrace();
+        } finally {
+            job.finishedAt = Instant.now();
+            deleteQuietly(job.purchaseFile);
+            deleteQuietly(job.gstr2bFile);
+        }
+    }
+
+    private void purgeFinished() {
+        Instant cutoff = Instant.now().minus(retention);
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(cutoff));
+    }
+
+    private Path spool(MultipartFile file) throws IOException {
+        Path path = Files.createTempFile("reconcile-job-", ".upload");
+        try {
+            file.transferTo(path);
+        } catch (IOException e) {
+            deleteQuietly(path);
+            throw e;
+        }
+        return path;
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            System.err.println("Could not delete " + path + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
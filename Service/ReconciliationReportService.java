@@ -1,180 +1,90 @@
 package com.RK8.V2.Service;
+import com.RK8.V2.DTO.ActionReport;
+import com.RK8.V2.DTO.MatchFlag;
 import com.RK8.V2.DTO.ReconciliationResult;
+import com.RK8.V2.DTO.ReconciliationStatus;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
-import java.util.*;
-import java.util.stream.Collectors;
+import java.util.ArrayList;
+import java.util.List;
 
 @Service
 public class ReconciliationReportService {
 
-    public Map<String, Object> generateActionReport(List<ReconciliationResult> results) {
-        Map<String, Object> report = new HashMap<>();
+    private static final int TOP_MISSING = 10;
 
-        // 1. Summary Statistics
-        Map<String, Long> statusSummary = results.stream()
-                .collect(Collectors.groupingBy(
-                        ReconciliationResult::getStatus,
-                        Collectors.counting()
-                ));
-
-        // 2. ITC Analysis
-        BigDecimal totalPurchaseTax = results.stream()
-                .map(ReconciliationResult::getPurchaseTax)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        BigDecimal totalGstr2bTax = results.stream()
-                .map(ReconciliationResult::getGstr2bTax)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        BigDecimal totalItcAtRisk = results.stream()
-                .map(ReconciliationResult::getItcAtRisk)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        BigDecimal totalItcAvailable = results.stream()
-                .filter(r -> "MATCHED".equals(r.getStatus()) ||
-                        "MATCHED_WITH_TOLERANCE".equals(r.getStatus()) ||
-                        "MISSING_IN_PURCHASE".equals(r.getStatus()))
-                .map(r -> r.getGstr2bTax().max(r.getPurchaseTax()))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    public ActionReport generateActionReport(List<ReconciliationResult> results) {
+        // 1-2. Summary statistics and ITC analysis, plus the rollups below, in one pass
+        ResultAggregate totals = ResultAggregate.of(results, TOP_MISSING);
+        return generateActionReport(results, totals);
+    }
 
+    // For callers that already aggregated the results
+    public ActionReport generateActionReport(List<ReconciliationResult> results, ResultAggregate totals) {
         // 3. Action Items
-        List<Map<String, Object>> actionItems = new ArrayList<>();
-
-        // Action: Add missing purchase invoices
-        results.stream()
-                .filter(r -> "MISSING_IN_PURCHASE".equals(r.getStatus()))
-                .sorted((a, b) -> b.getGstr2bTax().compareTo(a.getGstr2bTax()))
-                .forEach(r -> {
-                    Map<String, Object> action = new HashMap<>();
-                    action.put("action", "ADD_TO_PURCHASE_REGISTER");
-                    action.put("priority", "HIGH");
-                    action.put("supplierGstin", r.getSupplierGstin());
-                    action.put("invoiceNo", r.getInvoiceNo());
-                    action.put("invoiceMonth", r.getInvoiceMonth());
-                    action.put("taxAmount", r.getGstr2bTax());
-                    action.put("reason", "Invoice exists in GSTR-2B but not in purchase register");
-                    actionItems.add(action);
-                });
-
-        // Action: Review GSTIN mismatches
-        results.stream()
-                .filter(r -> r.getRemarks().contains("GSTIN mismatch"))
-                .forEach(r -> {
-                    Map<String, Object> action = new HashMap<>();
-                    action.put("action", "VERIFY_SUPPLIER_GSTIN");
-                    action.put("priority", "MEDIUM");
-                    action.put("purchaseGstin", r.getSupplierGstin());
-                    action.put("invoiceNo", r.getInvoiceNo());
-                    action.put("purchaseTax", r.getPurchaseTax());
-                    action.put("gstr2bTax", r.getGstr2bTax());
-                    action.put("remarks", r.getRemarks());
-                    actionItems.add(action);
-                });
-
-        // 4. Supplier-wise Analysis
-        Map<String, Map<String, Object>> supplierAnalysis = new HashMap<>();
-
-        results.forEach(r -> {
-            String gstin = r.getSupplierGstin();
-            supplierAnalysis.computeIfAbsent(gstin, k -> {
-                Map<String, Object> supplier = new HashMap<>();
-                supplier.put("gstin", gstin);
-                supplier.put("totalInvoices", 0L);
-                supplier.put("matched", 0L);
-                supplier.put("missingInPurchase", 0L);
-                supplier.put("totalTax", BigDecimal.ZERO);
-                supplier.put("itcAtRisk", BigDecimal.ZERO);
-                return supplier;
-            });
-
-            Map<String, Object> supplier = supplierAnalysis.get(gstin);
-            supplier.put("totalInvoices", (Long) supplier.get("totalInvoices") + 1);
-
-            if ("MATCHED".equals(r.getStatus()) || "MATCHED_WITH_TOLERANCE".equals(r.getStatus())) {
-                supplier.put("matched", (Long) supplier.get("matched") + 1);
-            } else if ("MISSING_IN_PURCHASE".equals(r.getStatus())) {
-                supplier.put("missingInPurchase", (Long) supplier.get("missingInPurchase") + 1);
+        List<ReconciliationResult> missingInPurchase = new ArrayList<>();
+        List<ActionReport.ActionItem> gstinMismatches = new ArrayList<>((int) totals.count(MatchFlag.GSTIN_MISMATCH));
+        for (ReconciliationResult r : results) {
+            if (r.getStatus() == ReconciliationStatus.MISSING_IN_PURCHASE) {
+                missingInPurchase.add(r);
             }
+            if (r.has(MatchFlag.GSTIN_MISMATCH)) {
+                // Action: Review GSTIN mismatches
+                gstinMismatches.add(new ActionReport.ActionItem(
+                        "VERIFY_SUPPLIER_GSTIN", "MEDIUM",
+                        null, r.getSupplierGstin(), r.getInvoiceNo(), null,
+                        null, r.getPurchaseTax(), r.getGstr2bTax(),
+                        null, r.getRemarks()));
+            }
+        }
+
+        // Action: Add missing purchase invoices, largest first
+        missingInPurchase.sort((a, b) -> b.getGstr2bTax().compareTo(a.getGstr2bTax()));
+        List<ActionReport.ActionItem> actionItems = new ArrayList<>(missingInPurchase.size() + gstinMismatches.size());
+        for (ReconciliationResult r : missingInPurchase) {
+            actionItems.add(new ActionReport.ActionItem(
+                    "ADD_TO_PURCHASE_REGISTER", "HIGH",
+                    r.getSupplierGstin(), null, r.getInvoiceNo(), r.getInvoiceMonth(),
+                    r.getGstr2bTax(), null, null,
+                    "Invoice exists in GSTR-2B but not in purchase register", null));
+        }
+        actionItems.addAll(gstinMismatches);
 
-            BigDecimal totalTax = ((BigDecimal) supplier.get("totalTax")).add(r.getGstr2bTax());
-            supplier.put("totalTax", totalTax);
-
-            BigDecimal itcAtRisk = ((BigDecimal) supplier.get("itcAtRisk")).add(r.getItcAtRisk());
-            supplier.put("itcAtRisk", itcAtRisk);
-        });
-
-        // 5. Monthly Analysis
-        Map<String, Map<String, Object>> monthlyAnalysis = new HashMap<>();
-
-        results.forEach(r -> {
-            String month = r.getInvoiceMonth().toString();
-            monthlyAnalysis.computeIfAbsent(month, k -> {
-                Map<String, Object> monthly = new HashMap<>();
-                monthly.put("month", month);
-                monthly.put("totalInvoices", 0L);
-                monthly.put("totalTax", BigDecimal.ZERO);
-                monthly.put("itcClaimed", BigDecimal.ZERO);
-                monthly.put("itcAtRisk", BigDecimal.ZERO);
-                return monthly;
-            });
-
-            Map<String, Object> monthly = monthlyAnalysis.get(month);
-            monthly.put("totalInvoices", (Long) monthly.get("totalInvoices") + 1);
-
-            BigDecimal totalTax = ((BigDecimal) monthly.get("totalTax")).add(r.getGstr2bTax());
-            monthly.put("totalTax", totalTax);
+        // 4. Supplier-wise Analysis
+        List<ActionReport.SupplierRow> suppliers = new ArrayList<>(totals.getSuppliers().size());
+        totals.getSuppliers().forEach((gstin, t) -> suppliers.add(new ActionReport.SupplierRow(
+                gstin, t.getCount(), t.getMatched(), t.getMissingInPurchase(), t.getGstr2bTax(), t.getItcAtRisk())));
 
-            if ("MISSING_IN_PURCHASE".equals(r.getStatus())) {
-                BigDecimal itcAtRisk = ((BigDecimal) monthly.get("itcAtRisk")).add(r.getItcAtRisk());
-                monthly.put("itcAtRisk", itcAtRisk);
-            } else {
-                BigDecimal itcClaimed = ((BigDecimal) monthly.get("itcClaimed")).add(r.getPurchaseTax());
-                monthly.put("itcClaimed", itcClaimed);
-            }
-        });
+        // 5. Monthly Analysis (claimed: purchase tax, which is zero on missing-in-purchase rows)
+        List<ActionReport.MonthRow> months = new ArrayList<>(totals.getMonths().size());
+        totals.getMonths().forEach((month, t) -> months.add(new ActionReport.MonthRow(
+                month, t.getCount(), t.getGstr2bTax(), t.getPurchaseTax(), t.getMissingInPurchaseRisk())));
 
         // 6. Top Missing Invoices by Value
-        List<Map<String, Object>> topMissingByValue = results.stream()
-                .filter(r -> "MISSING_IN_PURCHASE".equals(r.getStatus()))
-                .sorted((a, b) -> b.getGstr2bTax().compareTo(a.getGstr2bTax()))
-                .limit(10)
-                .map(r -> {
-                    Map<String, Object> invoice = new HashMap<>();
-                    invoice.put("supplierGstin", r.getSupplierGstin());
-                    invoice.put("invoiceNo", r.getInvoiceNo());
-                    invoice.put("invoiceMonth", r.getInvoiceMonth());
-                    invoice.put("taxAmount", r.getGstr2bTax());
-                    return invoice;
-                })
-                .collect(Collectors.toList());
+        List<ActionReport.MissingInvoice> topMissingByValue = new ArrayList<>();
+        for (ReconciliationResult r : totals.getTopMissingInPurchase()) {
+            topMissingByValue.add(new ActionReport.MissingInvoice(
+                    r.getSupplierGstin(), r.getInvoiceNo(), r.getInvoiceMonth(), r.getGstr2bTax()));
+        }
 
         // 7. Compliance Score
-        long totalInvoices = results.size();
-        long matchedInvoices = statusSummary.getOrDefault("MATCHED", 0L) +
-                statusSummary.getOrDefault("MATCHED_WITH_TOLERANCE", 0L);
+        long totalInvoices = totals.getCount();
+        long matchedInvoices = totals.getMatched();
 
         double complianceScore = totalInvoices > 0 ?
                 (matchedInvoices * 100.0) / totalInvoices : 100.0;
 
         // Build final report
-        report.put("summary", Map.of(
-                "totalInvoices", totalInvoices,
-                "matchedInvoices", matchedInvoices,
-                "complianceScore", String.format("%.2f%%", complianceScore),
-                "itcAvailable", totalItcAvailable,
-                "itcClaimed", totalPurchaseTax,
-                "itcAtRisk", totalItcAtRisk,
-                "itcUnclaimed", totalItcAvailable.subtract(totalPurchaseTax)
-        ));
-
-        report.put("statusBreakdown", statusSummary);
-        report.put("actionItems", actionItems);
-        report.put("supplierAnalysis", new ArrayList<>(supplierAnalysis.values()));
-        report.put("monthlyAnalysis", new ArrayList<>(monthlyAnalysis.values()));
-        report.put("topMissingByValue", topMissingByValue);
-
-        return report;
+        ActionReport.Summary summary = new ActionReport.Summary(
+                totalInvoices,
+                matchedInvoices,
+                String.format("%.2f%%", complianceScore),
+                totals.getItcAvailable(),
+                totals.getPurchaseTax(),
+                totals.getItcAtRisk(),
+                totals.getItcAvailable().minus(totals.getPurchaseTax())
+        );
+
+        return new ActionReport(summary, totals.getStatusCounts(), actionItems, suppliers, months, topMissingByValue);
     }
 }
@@ -0,0 +1,226 @@
+package com.RK8.V2.Service;
+
+import com.RK8.V2.DTO.CachedRun;
+import com.RK8.V2.DTO.ParsedUploads;
+import com.RK8.V2.DTO.ReconciliationOutcome;
+import com.RK8.V2.DTO.ReconciliationResult;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+// Reconcile once, render many: every reconciliation started from uploaded files is kept under a
+// run ID, so /upload, the reports and the downloads can be served from one parse and one match.
+// Bounded by run count and by total rows held (purchases + 2B + results); the least recently
+// used run is evicted first, and runs not touched for the TTL expire. Every new run is also
+// written to the reconciliation history, and its results to the mapped result store where they
+// stay pageable after eviction.
+@Service
+public class ReconciliationRunRegistry {
+    private final UploadParsingService uploadParsingService;
+    private final Purchase2BReconciliationService reconciliationService;
+    private final ReconciliationHistoryStore historyStore;
+    private final MappedResultStore resultStore;
+    private final int maxRuns;
+    private final long maxRows;
+    private final Duration ttl;
+
+    // Access order, so iteration starts at the least recently used run
+    private final LinkedHashMap<String, Entry> runs = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedRows;
+    // Derived row orders (e.g. a filtered, sorted detail list) keyed "runId:view", as row numbers
+    // into the run's results. They outlive the cached run, since the numbers also address its
+    // ResultFile, and share the max-rows budget; least recently used dropped first.
+    private final LinkedHashMap<String, int[]> views = new LinkedHashMap<>(16, 0.75f, true);
+    private long viewRows;
+
+    private static final class Entry {
+        final CachedRun run;
+        final long rows;
+        // Idle time before the run expires
+        final Duration ttl;
+        Instant lastAccess;
+
+        Entry(CachedRun run, Duration ttl) {
+            this.run = run;
+            this.rows = run.getPurchases().size() + run.getGstr2bList().size() + run.getResults().size();
+            this.ttl = ttl;
+            this.lastAccess = run.getCreatedAt();
+        }
+    }
+
+    public ReconciliationRunRegistry(
+            UploadParsingService uploadParsingService,
+            Purchase2BReconciliationService reconciliationService,
+            ReconciliationHistoryStore historyStore,
+            MappedResultStore resultStore,
+            @Value("${reconcile.run-cache.max-runs:20}") int maxRuns,
+            @Value("${reconcile.run-cache.max-rows:2000000}") long maxRows,
+            @Value("${reconcile.run-cache.ttl-minutes:30}") long ttlMinutes) {
+        this.uploadParsingService = uploadParsingService;
+        this.reconciliationService = reconciliationService;
+        this.historyStore = historyStore;
+        this.resultStore = resultStore;
+        this.maxRuns = maxRuns;
+        this.maxRows = maxRows;
+        this.ttl = Duration.ofMinutes(ttlMinutes);
+    }
+
+    // The cached run when runId is given, otherwise a fresh reconciliation of the two files
+    public CachedRun resolve(String runId, MultipartFile purchaseFile, MultipartFile gstr2bFile,
+                             List<String> strategies) throws Exception {
+        return resolve(runId, purchaseFile, gstr2bFile, strategies, null, null);
+    }
+
+    // clientGstin and period label the run in the history; period defaults to the 2B month
+    public CachedRun resolve(String runId, MultipartFile purchaseFile, MultipartFile gstr2bFile,
+                             List<String> strategies, String clientGstin, String period) throws Exception {
+        if (runId != null && !runId.trim().isEmpty()) {
+            return get(runId.trim());
+        }
+        return reconcile(purchaseFile, gstr2bFile, strategies, clientGstin, period);
+    }
+
+    public CachedRun reconcile(MultipartFile purchaseFile, MultipartFile gstr2bFile,
+                               List<String> strategies, String clientGstin, String period) throws Exception {
+        if (purchaseFile == null || gstr2bFile == null) {
+            throw new IllegalArgumentException("Either runId or both purchaseFile and gstr2bFile are required");
+        }
+
+        // Parsing and matching happen outside the lock
+        ParsedUploads uploads = uploadParsingService.parse(purchaseFile, gstr2bFile);
+        ReconciliationOutcome outcome = reconciliationService.reconcile(
+                uploads.getPurchases(), uploads.getGstr2bIndex(), strategies);
+        return register(uploads, outcome, clientGstin, period);
+    }
+
+    // Caches a reconciliation done elsewhere (e.g. by a background job) under a new run ID
+    public CachedRun register(ParsedUploads uploads, ReconciliationOutcome outcome,
+                              String clientGstin, String period) {
+        return register(uploads, outcome, clientGstin, period, ttl);
+    }
+
+    // Same, kept for at least keepFor of idle time (e.g. as long as the job that made it is
+    // reported); eviction by run count and row budget still applies
+    public CachedRun register(ParsedUploads uploads, ReconciliationOutcome outcome,
+                              String clientGstin, String period, Duration keepFor) {
+        CachedRun run = new CachedRun(UUID.randomUUID().toString(), uploads.getPurchases(),
+                uploads.getGstr2bList(), outcome.getResults(), outcome.getStrategyStats(), Instant.now());
+        put(run, keepFor.compareTo(ttl) > 0 ? keepFor : ttl);
+        resultStore.save(run);
+        historyStore.saveAsync(run, clientGstin, period);
+        return run;
+    }
+
+    public synchronized CachedRun get(String runId) {
+        Instant now = Instant.now();
+        expire(now);
+        Entry entry = runs.get(runId);
+        if (entry == null) {
+            throw new IllegalArgumentException("Unknown or expired run: " + runId);
+        }
+        entry.lastAccess = now;
+        return entry.run;
+    }
+
+    // Pageable results of a run, cached or not
+    public ResultFile results(String runId) {
+        return resultStore.open(runId);
+    }
+
+    // A run's results in order: the cached list, or read through its ResultFile once the run
+    // has left the cache
+    public List<ReconciliationResult> resultRows(String runId) {
+        synchronized (this) {
+            Instant now = Instant.now();
+            expire(now);
+            Entry entry = runs.get(runId);
+            if (entry != null) {
+                entry.lastAccess = now;
+                return entry.run.getResults();
+            }
+        }
+        try {
+            return resultStore.open(runId).asList();
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown or expired run: " + runId);
+        }
+    }
+
+    // Row numbers of one view of a run, built on first use and then reused
+    public int[] view(String runId, String view, Supplier<int[]> build) {
+        String key = runId + ":" + view;
+        synchronized (views) {
+            int[] rows = views.get(key);
+            if (rows != null) return rows;
+        }
+
+        // Built outside the lock; two requests racing for the same view both build it
+        int[] rows = build.get();
+        synchronized (views) {
+            int[] previous = views.put(key, rows);
+            viewRows += rows.length - (previous == null ? 0 : previous.length);
+            Iterator<int[]> it = views.values().iterator();
+            while (viewRows > maxRows && views.size() > 1) {
+                viewRows -= it.next().length;
+                it.remove();
+            }
+        }
+        return rows;
+    }
+
+    public boolean remove(String runId) {
+        boolean stored = resultStore.remove(runId);
+        synchronized (views) {
+            Iterator<Map.Entry<String, int[]>> it = views.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, int[]> view = it.next();
+                if (view.getKey().startsWith(runId + ":")) {
+                    viewRows -= view.getValue().length;
+                    it.remove();
+                }
+            }
+        }
+        synchronized (this) {
+            Entry entry = runs.remove(runId);
+            if (entry == null) return stored;
+            cachedRows -= entry.rows;
+            return true;
+        }
+    }
+
+    private synchronized void put(CachedRun run, Duration ttl) {
+        Entry entry = new Entry(run, ttl);
+        runs.put(run.getRunId(), entry);
+        cachedRows += entry.rows;
+        expire(run.getCreatedAt());
+
+        // A single run larger than the row budget is still kept until the next one arrives
+        Iterator<Map.Entry<String, Entry>> it = runs.entrySet().iterator();
+        while ((runs.size() > maxRuns || cachedRows > maxRows) && runs.size() > 1) {
+            Entry eldest = it.next().getValue();
+            it.remove();
+            cachedRows -= eldest.rows;
+            System.out.println("Run cache: evicted " + eldest.run.getRunId());
+        }
+    }
+
+    private void expire(Instant now) {
+        Iterator<Map.Entry<String, Entry>> it = runs.entrySet().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next().getValue();
+            if (Duration.between(entry.lastAccess, now).compareTo(entry.ttl) > 0) {
+                it.remove();
+                cachedRows -= entry.rows;
+            }
+        }
+    }
+}
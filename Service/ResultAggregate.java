@@ -0,0 +1,319 @@
+package com.RK8.V2.Service;
+
+import com.RK8.V2.DTO.MatchFlag;
+import com.RK8.V2.DTO.Money;
+import com.RK8.V2.DTO.ReconciliationResult;
+import com.RK8.V2.DTO.ReconciliationStatus;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+// Every count, total and rollup the responses and reports need, gathered in one walk over the
+// results: status counts, tax / ITC totals, per-month and per-supplier totals, the period
+// covered and the largest invoices missing from the purchase register. Amounts are summed as
+// paise. Feed it rows with accept (it is a result sink, so it also works on a streaming run),
+// or build it over a list with of(), which splits large lists across cores and combines the
+// partial aggregates in list order.
+public final class ResultAggregate implements Consumer<ReconciliationResult> {
+    private static final int PARALLEL_THRESHOLD = 50_000;
+    private static final ReconciliationStatus[] STATUSES = ReconciliationStatus.values();
+    private static final MatchFlag[] FLAGS = MatchFlag.values();
+    private static final Comparator<Ranked> TOP_ORDER =
+            // Largest 2B tax first; equal amounts keep result order
+            Comparator.comparingLong((Ranked r) -> r.taxPaise).reversed().thenComparingLong(r -> r.seq);
+
+    private final int topN;
+
+    private long count;
+    // Indexed by ordinal
+    private final long[] statusCounts = new long[STATUSES.length];
+    private final long[] flagCounts = new long[FLAGS.length];
+    private long purchaseTaxPaise;
+    private long gstr2bTaxPaise;
+    private long itcAtRiskPaise;
+    // Larger of the two sides, over matched and missing-in-purchase rows
+    private long itcAvailablePaise;
+    // ITC at risk over the rows that are not MATCHED*
+    private long unmatchedRiskPaise;
+    private final Map<String, MonthTotals> months = new HashMap<>();
+    private final Map<String, SupplierTotals> suppliers = new HashMap<>();
+    private String minMonth;
+    private String maxMonth;
+    // Worst-first heap of the topN largest missing-in-purchase rows seen so far
+    private final PriorityQueue<Ranked> topMissing;
+
+    public ResultAggregate(int topN) {
+        this.topN = topN;
+        this.topMissing = new PriorityQueue<>(Math.max(1, topN + 1), TOP_ORDER.reversed());
+    }
+
+    public static ResultAggregate of(List<ReconciliationResult> results, int topN) {
+        return (results.size() >= PARALLEL_THRESHOLD ? results.parallelStream() : results.stream())
+                .collect(() -> new ResultAggregate(topN), ResultAggregate::accept, ResultAggregate::combine);
+    }
+
+    public static final class MonthTotals {
+        private long count;
+        private long gstr2bTaxPaise;
+        private long purchaseTaxPaise;
+        private long itcAtRiskPaise;
+        private long missingInPurchaseRiskPaise;
+        private long unmatchedCount;
+        private long unmatchedRiskPaise;
+
+        public long getCount() {
+            return count;
+        }
+
+        public Money getGstr2bTax() {
+            return Money.ofPaise(gstr2bTaxPaise);
+        }
+
+        public Money getPurchaseTax() {
+            return Money.ofPaise(purchaseTaxPaise);
+        }
+
+        public Money getItcAtRisk() {
+            return Money.ofPaise(itcAtRiskPaise);
+        }
+
+        // ITC at risk of the MISSING_IN_PURCHASE rows only
+        public Money getMissingInPurchaseRisk() {
+            return Money.ofPaise(missingInPurchaseRiskPaise);
+        }
+
+        // Rows that are not MATCHED*, and their ITC at risk
+        public long getUnmatchedCount() {
+            return unmatchedCount;
+        }
+
+        public Money getUnmatchedRisk() {
+            return Money.ofPaise(unmatchedRiskPaise);
+        }
+
+        private void add(MonthTotals o) {
+            count += o.count;
+            gstr2bTaxPaise += o.gstr2bTaxPaise;
+            purchaseTaxPaise += o.purchaseTaxPaise;
+            itcAtRiskPaise += o.itcAtRiskPaise;
+            missingInPurchaseRiskPaise += o.missingInPurchaseRiskPaise;
+            unmatchedCount += o.unmatchedCount;
+            unmatchedRiskPaise += o.unmatchedRiskPaise;
+        }
+    }
+
+    public static final class SupplierTotals {
+        private long count;
+        private long matched;
+        private long missingInPurchase;
+        private long gstr2bTaxPaise;
+        private long itcAtRiskPaise;
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMatched() {
+            return matched;
+        }
+
+        public long getMissingInPurchase() {
+            return missingInPurchase;
+        }
+
+        public Money getGstr2bTax() {
+            return Money.ofPaise(gstr2bTaxPaise);
+        }
+
+        public Money getItcAtRisk() {
+            return Money.ofPaise(itcAtRiskPaise);
+        }
+
+        private void add(SupplierTotals o) {
+            count += o.count;
+            matched += o.matched;
+            missingInPurchase += o.missingInPurchase;
+            gstr2bTaxPaise += o.gstr2bTaxPaise;
+            itcAtRiskPaise += o.itcAtRiskPaise;
+        }
+    }
+
+    private static final class Ranked {
+        final ReconciliationResult result;
+        final long taxPaise;
+        final long seq;
+
+        Ranked(ReconciliationResult result, long taxPaise, long seq) {
+            this.result = result;
+            this.taxPaise = taxPaise;
+            this.seq = seq;
+        }
+    }
+
+    @Override
+    public void accept(ReconciliationResult r) {
+        long seq = count++;
+        ReconciliationStatus status = r.getStatus();
+        statusCounts[status.ordinal()]++;
+        for (int flags = r.getFlags(); flags != 0; flags &= flags - 1) {
+            flagCounts[Integer.numberOfTrailingZeros(flags)]++;
+        }
+
+        boolean matched = status.isMatched();
+        boolean missingInPurchase = status == ReconciliationStatus.MISSING_IN_PURCHASE;
+        long purchaseTax = paise(r.getPurchaseTax());
+        long gstr2bTax = paise(r.getGstr2bTax());
+        long risk = paise(r.getItcAtRisk());
+
+        purchaseTaxPaise += purchaseTax;
+        gstr2bTaxPaise += gstr2bTax;
+        itcAtRiskPaise += risk;
+        if (matched || missingInPurchase) {
+            itcAvailablePaise += Math.max(gstr2bTax, purchaseTax);
+        }
+        if (!matched) {
+            unmatchedRiskPaise += risk;
+        }
+
+        if (r.getInvoiceMonth() != null) {
+            String month = r.getInvoiceMonth().toString();
+            MonthTotals m = months.computeIfAbsent(month, k -> new MonthTotals());
+            m.count++;
+            m.gstr2bTaxPaise += gstr2bTax;
+            m.purchaseTaxPaise += purchaseTax;
+            m.itcAtRiskPaise += risk;
+            if (missingInPurchase) m.missingInPurchaseRiskPaise += risk;
+            if (!matched) {
+                m.unmatchedCount++;
+                m.unmatchedRiskPaise += risk;
+            }
+            if (minMonth == null || month.compareTo(minMonth) < 0) minMonth = month;
+            if (maxMonth == null || month.compareTo(maxMonth) > 0) maxMonth = month;
+        }
+
+        SupplierTotals s = suppliers.computeIfAbsent(r.getSupplierGstin(), k -> new SupplierTotals());
+        s.count++;
+        if (matched) s.matched++;
+        if (missingInPurchase) s.missingInPurchase++;
+        s.gstr2bTaxPaise += gstr2bTax;
+        s.itcAtRiskPaise += risk;
+
+        if (missingInPurchase && topN > 0) {
+            offerTop(new Ranked(r, gstr2bTax, seq));
+        }
+    }
+
+    // Folds in the aggregate of the rows that come after this one's
+    public ResultAggregate combine(ResultAggregate later) {
+        long offset = count;
+        count += later.count;
+        for (int i = 0; i < statusCounts.length; i++) {
+            statusCounts[i] += later.statusCounts[i];
+        }
+        for (int i = 0; i < flagCounts.length; i++) {
+            flagCounts[i] += later.flagCounts[i];
+        }
+        purchaseTaxPaise += later.purchaseTaxPaise;
+        gstr2bTaxPaise += later.gstr2bTaxPaise;
+        itcAtRiskPaise += later.itcAtRiskPaise;
+        itcAvailablePaise += later.itcAvailablePaise;
+        unmatchedRiskPaise += later.unmatchedRiskPaise;
+        later.months.forEach((month, m) -> months.computeIfAbsent(month, k -> new MonthTotals()).add(m));
+        later.suppliers.forEach((gstin, s) -> suppliers.computeIfAbsent(gstin, k -> new SupplierTotals()).add(s));
+        if (later.minMonth != null && (minMonth == null || later.minMonth.compareTo(minMonth) < 0)) minMonth = later.minMonth;
+        if (later.maxMonth != null && (maxMonth == null || later.maxMonth.compareTo(maxMonth) > 0)) maxMonth = later.maxMonth;
+        for (Ranked r : later.topMissing) {
+            offerTop(new Ranked(r.result, r.taxPaise, r.seq + offset));
+        }
+        return this;
+    }
+
+    private void offerTop(Ranked r) {
+        topMissing.add(r);
+        if (topMissing.size() > topN) {
+            topMissing.poll();
+        }
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long count(ReconciliationStatus status) {
+        return statusCounts[status.ordinal()];
+    }
+
+    public long count(MatchFlag flag) {
+        return flagCounts[flag.ordinal()];
+    }
+
+    // Statuses that occur at least once, in declaration order
+    public Map<ReconciliationStatus, Long> getStatusCounts() {
+        Map<ReconciliationStatus, Long> counts = new EnumMap<>(ReconciliationStatus.class);
+        for (ReconciliationStatus status : STATUSES) {
+            if (statusCounts[status.ordinal()] > 0) {
+                counts.put(status, statusCounts[status.ordinal()]);
+            }
+        }
+        return counts;
+    }
+
+    // MATCHED and MATCHED_WITH_TOLERANCE
+    public long getMatched() {
+        long matched = 0;
+        for (ReconciliationStatus status : STATUSES) {
+            if (status.isMatched()) matched += statusCounts[status.ordinal()];
+        }
+        return matched;
+    }
+
+    public Money getPurchaseTax() {
+        return Money.ofPaise(purchaseTaxPaise);
+    }
+
+    public Money getGstr2bTax() {
+        return Money.ofPaise(gstr2bTaxPaise);
+    }
+
+    public Money getItcAtRisk() {
+        return Money.ofPaise(itcAtRiskPaise);
+    }
+
+    public Money getItcAvailable() {
+        return Money.ofPaise(itcAvailablePaise);
+    }
+
+    public Money getUnmatchedRisk() {
+        return Money.ofPaise(unmatchedRiskPaise);
+    }
+
+    // Keyed by "yyyy-MM"
+    public Map<String, MonthTotals> getMonths() {
+        return Collections.unmodifiableMap(months);
+    }
+
+    public Map<String, SupplierTotals> getSuppliers() {
+        return Collections.unmodifiableMap(suppliers);
+    }
+
+    // "2025-04", "2025-04 to 2025-09", or "N/A" without dated rows
+    public String getPeriodCovered() {
+        if (minMonth == null) return "N/A";
+        return minMonth.equals(maxMonth) ? minMonth : minMonth + " to " + maxMonth;
+    }
+
+    // Largest missing-in-purchase rows by 2B tax, largest first
+    public List<ReconciliationResult> getTopMissingInPurchase() {
+        List<Ranked> ranked = new ArrayList<>(topMissing);
+        ranked.sort(TOP_ORDER);
+        List<ReconciliationResult> top = new ArrayList<>(ranked.size());
+        for (Ranked r : ranked) {
+            top.add(r.result);
+        }
+        return top;
+    }
+
+    private static long paise(Money money) {
+        return money == null ? 0 : money.getPaise();
+    }
+}
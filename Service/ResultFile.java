@@ -0,0 +1,284 @@
+package com.RK8.V2.Service;
+
+import com.RK8.V2.DTO.Money;
+import com.RK8.V2.DTO.ReconciliationResult;
+import com.RK8.V2.DTO.ReconciliationStatus;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.YearMonth;
+import java.util.*;
+
+// One run's results on disk, read back through memory maps so paging through a large run
+// costs a few small objects per row shown instead of the whole result list on the heap.
+// Two files:
+//   records  header (magic, version, count, status count, index offset), then fixed-width rows
+//            (string offsets, status id and match flags, amounts in paise, month), then per
+//            status its name and the row numbers holding it
+//   strings  side file the rows point into, each distinct string once, length-prefixed UTF-8
+// Rows are looked up by number or by position within a status. Reads use absolute offsets
+// only, so one instance can serve concurrent requests.
+public final class ResultFile {
+    private static final int MAGIC = 0x524B3852; // "RK8R"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 5 * Integer.BYTES;
+
+    // gstin, invoice, remarks, status, month (ints) + purchaseTax, gstr2bTax, itcAtRisk (longs)
+    private static final int RECORD_BYTES = 5 * Integer.BYTES + 3 * Long.BYTES;
+    private static final int GSTIN = 0;
+    private static final int INVOICE = 4;
+    private static final int REMARKS = 8;
+    private static final int STATUS = 12;
+    private static final int MONTH = 16;
+    private static final int PURCHASE_TAX = 20;
+    private static final int GSTR2B_TAX = 28;
+    private static final int ITC_AT_RISK = 36;
+    // The status int holds the status id in its low half and the MatchFlag bits above it
+    private static final int FLAGS_SHIFT = 16;
+    private static final int STATUS_MASK = (1 << FLAGS_SHIFT) - 1;
+
+    private static final int NULL_STRING = -1;
+    private static final int NULL_MONTH = Integer.MIN_VALUE;
+    private static final long NULL_MONEY = Long.MIN_VALUE;
+
+    private final ByteBuffer records;
+    private final ByteBuffer strings;
+    private final int size;
+    // Status name -> {index offset of its first row number, row count}, in first-seen order
+    private final Map<String, int[]> statuses = new LinkedHashMap<>();
+    private final ReconciliationStatus[] statusValues;
+
+    private ResultFile(ByteBuffer records, ByteBuffer strings, Path file) throws IOException {
+        this.records = records;
+        this.strings = strings;
+        if (records.limit() < HEADER_BYTES || records.getInt(0) != MAGIC || records.getInt(4) != VERSION) {
+            throw new IOException("Not a result file: " + file);
+        }
+        this.size = records.getInt(8);
+        int statusCount = records.getInt(12);
+        int pos = records.getInt(16);
+        if (size < 0 || HEADER_BYTES + (long) size * RECORD_BYTES > pos || pos > records.limit()) {
+            throw new IOException("Truncated result file: " + file);
+        }
+
+        statusValues = new ReconciliationStatus[statusCount];
+        for (int i = 0; i < statusCount; i++) {
+            String name = string(records.getInt(pos));
+            int count = records.getInt(pos + 4);
+            statusValues[i] = ReconciliationStatus.valueOf(name);
+            statuses.put(name, new int[]{pos + 8, count});
+            pos += 8 + count * Integer.BYTES;
+        }
+    }
+
+    public static ResultFile open(Path recordsFile, Path stringsFile) throws IOException {
+        return new ResultFile(map(recordsFile), map(stringsFile), recordsFile);
+    }
+
+    public static void write(Path recordsFile, Path stringsFile, List<ReconciliationResult> results) throws IOException {
+        // Rows plus one index entry per row must stay mappable as a single buffer
+        if ((long) results.size() * (RECORD_BYTES + Integer.BYTES) > Integer.MAX_VALUE / 2) {
+            throw new IOException("Run too large for a result file: " + results.size() + " results");
+        }
+        Map<String, Integer> offsets = new HashMap<>();
+        Map<String, Integer> statusIds = new LinkedHashMap<>();
+        List<int[]> statusRows = new ArrayList<>();
+        int[] statusCounts = new int[0];
+
+        try (DataOutputStream rec = open(recordsFile); DataOutputStream str = open(stringsFile)) {
+            StringSink sink = new StringSink(offsets, str);
+            rec.writeInt(MAGIC);
+            rec.writeInt(VERSION);
+            rec.writeInt(results.size());
+            rec.writeInt(0); // status count, patched below
+            rec.writeInt(0); // index offset, patched below
+
+            for (int row = 0; row < results.size(); row++) {
+                ReconciliationResult r = results.get(row);
+                String name = r.getStatus().name();
+                Integer status = statusIds.get(name);
+                if (status == null) {
+                    status = statusIds.size();
+                    statusIds.put(name, status);
+                    statusRows.add(new int[16]);
+                    statusCounts = Arrays.copyOf(statusCounts, status + 1);
+                }
+                int[] rows = statusRows.get(status);
+                if (statusCounts[status] == rows.length) {
+                    rows = Arrays.copyOf(rows, rows.length * 2);
+                    statusRows.set(status, rows);
+                }
+                rows[statusCounts[status]++] = row;
+
+                rec.writeInt(sink.offset(r.getSupplierGstin()));
+                rec.writeInt(sink.offset(r.getInvoiceNo()));
+                rec.writeInt(sink.offset(r.getRemarks()));
+                rec.writeInt(status | r.getFlags() << FLAGS_SHIFT);
+                rec.writeInt(r.getInvoiceMonth() == null ? NULL_MONTH
+                        : r.getInvoiceMonth().getYear() * 12 + r.getInvoiceMonth().getMonthValue() - 1);
+                rec.writeLong(paise(r.getPurchaseTax()));
+                rec.writeLong(paise(r.getGstr2bTax()));
+                rec.writeLong(paise(r.getItcAtRisk()));
+            }
+
+            // Status index: name, row count, row numbers in ascending order
+            for (Map.Entry<String, Integer> e : statusIds.entrySet()) {
+                int id = e.getValue();
+                rec.writeInt(sink.offset(e.getKey()));
+                rec.writeInt(statusCounts[id]);
+                int[] rows = statusRows.get(id);
+                for (int i = 0; i < statusCounts[id]; i++) {
+                    rec.writeInt(rows[i]);
+                }
+            }
+        }
+
+        int indexOffset = HEADER_BYTES + results.size() * RECORD_BYTES;
+        try (FileChannel ch = FileChannel.open(recordsFile, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(2 * Integer.BYTES);
+            b.putInt(0, statusIds.size()).putInt(4, indexOffset);
+            ch.write(b, 12);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Row counts per status, in the order the statuses first appear
+    public Map<String, Integer> statusCounts() {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        statuses.forEach((status, slot) -> counts.put(status, slot[1]));
+        return counts;
+    }
+
+    public int count(String status) {
+        if (status == null) return size;
+        int[] slot = statuses.get(status);
+        return slot == null ? 0 : slot[1];
+    }
+
+    public ReconciliationResult get(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        }
+        int at = HEADER_BYTES + row * RECORD_BYTES;
+        int month = records.getInt(at + MONTH);
+        int status = records.getInt(at + STATUS);
+        return new ReconciliationResult(
+                string(records.getInt(at + GSTIN)),
+                string(records.getInt(at + INVOICE)),
+                statusValues[status & STATUS_MASK],
+                money(records.getLong(at + PURCHASE_TAX)),
+                money(records.getLong(at + GSTR2B_TAX)),
+                money(records.getLong(at + ITC_AT_RISK)),
+                string(records.getInt(at + REMARKS)),
+                month == NULL_MONTH ? null : YearMonth.of(Math.floorDiv(month, 12), Math.floorMod(month, 12) + 1),
+                status >>> FLAGS_SHIFT);
+    }
+
+    // Every row in order, read on access
+    public List<ReconciliationResult> asList() {
+        return new Rows();
+    }
+
+    private final class Rows extends AbstractList<ReconciliationResult> implements RandomAccess {
+        @Override
+        public ReconciliationResult get(int row) {
+            return ResultFile.this.get(row);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    // Row number of the i-th result with this status
+    public int rowOf(String status, int i) {
+        int[] slot = statuses.get(status);
+        if (slot == null || i < 0 || i >= slot[1]) {
+            throw new IndexOutOfBoundsException("No " + status + " row " + i);
+        }
+        return records.getInt(slot[0] + i * Integer.BYTES);
+    }
+
+    // Up to limit results from offset, either over all rows or over one status
+    public List<ReconciliationResult> page(String status, int offset, int limit) {
+        int total = count(status);
+        int from = Math.max(0, offset);
+        int to = (int) Math.min(total, (long) from + Math.max(0, limit));
+        List<ReconciliationResult> page = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            page.add(get(status == null ? i : rowOf(status, i)));
+        }
+        return page;
+    }
+
+    private String string(int offset) {
+        if (offset == NULL_STRING) return null;
+        int len = strings.getInt(offset);
+        byte[] bytes = new byte[len];
+        strings.get(offset + Integer.BYTES, bytes, 0, len);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long paise(Money money) {
+        return money == null ? NULL_MONEY : money.getPaise();
+    }
+
+    private static Money money(long paise) {
+        return paise == NULL_MONEY ? null : Money.ofPaise(paise);
+    }
+
+    private static DataOutputStream open(Path file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+    }
+
+    private static ByteBuffer map(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Result file too large to map: " + file);
+            }
+            // The mapping stays valid after the channel is closed
+            return ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    // Appends each distinct string once and remembers where it went
+    private static final class StringSink {
+        private final Map<String, Integer> offsets;
+        private final DataOutputStream out;
+        private int written;
+
+        StringSink(Map<String, Integer> offsets, DataOutputStream out) {
+            this.offsets = offsets;
+            this.out = out;
+        }
+
+        int offset(String s) throws IOException {
+            if (s == null) return NULL_STRING;
+            Integer offset = offsets.get(s);
+            if (offset == null) {
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                if ((long) written + Integer.BYTES + bytes.length > Integer.MAX_VALUE) {
+                    throw new IOException("Too much result text for one result file");
+                }
+                offset = written;
+                out.writeInt(bytes.length);
+                out.write(bytes);
+                written += Integer.BYTES + bytes.length;
+                offsets.put(s, offset);
+            }
+            return offset;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.RK8.V2.Service;
+
+import com.RK8.V2.DTO.StrategyStats;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Work done by one strategy: time spent, calls, candidates looked at and matches produced.
+// Adders so partition tasks can record into the same counters without contention.
+public final class StrategyCounters {
+    private final String strategy;
+    private final LongAdder nanos = new LongAdder();
+    private final LongAdder invocations = new LongAdder();
+    private final LongAdder candidates = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+
+    public StrategyCounters(String strategy) {
+        this.strategy = strategy;
+    }
+
+    public void examined(long count) {
+        candidates.add(count);
+    }
+
+    void invoked(long elapsedNanos) {
+        nanos.add(elapsedNanos);
+        invocations.increment();
+    }
+
+    void hit() {
+        hits.increment();
+    }
+
+    void add(StrategyCounters other) {
+        nanos.add(other.nanos.sum());
+        invocations.add(other.invocations.sum());
+        candidates.add(other.candidates.sum());
+        hits.add(other.hits.sum());
+    }
+
+    StrategyStats snapshot(int order) {
+        return new StrategyStats(strategy, order, invocations.sum(), candidates.sum(), hits.sum(), nanos.sum());
+    }
+}
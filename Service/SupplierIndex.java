@@ -0,0 +1,72 @@
+package com.RK8.V2.Service;
+
+import com.RK8.V2.DTO.Gstr2BDTO;
+import com.RK8.V2.Parser.InvoiceNormalizer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// One supplier's 2B records with the per-supplier indexes the strategies use. Each index is
+// built on first use, so a chain that never asks for, say, the near-miss tree never pays for it.
+public final class SupplierIndex {
+    private final List<Gstr2BDTO> records;
+    private final InvoiceNormalizer.Memo invoices;
+
+    private Map<String, List<Gstr2BDTO>> byFolded;
+    private Map<String, List<Gstr2BDTO>> byBase;
+    private InvoiceBkTree tree;
+    private TaxAmountIndex byTax;
+    private DateWindowIndex byDate;
+
+    SupplierIndex(List<Gstr2BDTO> records, InvoiceNormalizer.Memo invoices) {
+        this.records = records;
+        this.invoices = invoices;
+    }
+
+    public List<Gstr2BDTO> records() {
+        return records;
+    }
+
+    public synchronized List<Gstr2BDTO> withFolded(String folded) {
+        if (byFolded == null) buildFormMaps();
+        return byFolded.getOrDefault(folded, Collections.emptyList());
+    }
+
+    public synchronized List<Gstr2BDTO> withBase(String base) {
+        if (byBase == null) buildFormMaps();
+        return byBase.getOrDefault(base, Collections.emptyList());
+    }
+
+    public synchronized InvoiceBkTree tree() {
+        if (tree == null) {
+            tree = new InvoiceBkTree();
+            for (Gstr2BDTO r : records) {
+                tree.add(invoices.forms(r.getInvoiceNo()).folded, r);
+            }
+        }
+        return tree;
+    }
+
+    public synchronized TaxAmountIndex byTax() {
+        if (byTax == null) byTax = new TaxAmountIndex(records);
+        return byTax;
+    }
+
+    public synchronized DateWindowIndex byDate() {
+        if (byDate == null) byDate = new DateWindowIndex(records);
+        return byDate;
+    }
+
+    private void buildFormMaps() {
+        byFolded = new HashMap<>();
+        byBase = new HashMap<>();
+        for (Gstr2BDTO r : records) {
+            InvoiceNormalizer.InvoiceForms inv = invoices.forms(r.getInvoiceNo());
+            byFolded.computeIfAbsent(inv.folded, k -> new ArrayList<>()).add(r);
+            byBase.computeIfAbsent(inv.base, k -> new ArrayList<>()).add(r);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.RK8.V2.Service;
+
+import com.RK8.V2.DTO.Gstr2BDTO;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+// One supplier's 2B records sorted by total tax, as parallel primitive/record arrays, so the
+// records within a tax tolerance of an amount are found by binary search instead of a scan.
+// Records with equal tax keep their original order.
+public final class TaxAmountIndex {
+    private final long[] taxPaise;
+    private final Gstr2BDTO[] records;
+
+    public TaxAmountIndex(List<Gstr2BDTO> source) {
+        int n = source.size();
+        long[] tax = new long[n];
+        for (int i = 0; i < n; i++) {
+            tax[i] = source.get(i).getTotalTax().getPaise();
+        }
+
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        // Arrays.sort on objects is stable
+        Arrays.sort(order, Comparator.comparingLong(i -> tax[i]));
+
+        this.taxPaise = new long[n];
+        this.records = new Gstr2BDTO[n];
+        for (int i = 0; i < n; i++) {
+            taxPaise[i] = tax[order[i]];
+            records[i] = source.get(order[i]);
+        }
+    }
+
+    // Visits records with |tax - targetPaise| <= tolerancePaise in ascending tax order
+    public void forEachWithin(long targetPaise, long tolerancePaise, Consumer<Gstr2BDTO> visitor) {
+        long upper = targetPaise + tolerancePaise;
+        for (int i = lowerBound(targetPaise - tolerancePaise); i < taxPaise.length && taxPaise[i] <= upper; i++) {
+            visitor.accept(records[i]);
+        }
+    }
+
+    // First position whose tax is >= paise
+    private int lowerBound(long paise) {
+        int lo = 0;
+        int hi = taxPaise.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (taxPaise[mid] < paise) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,135 @@
+package com.RK8.V2.Service;
+
+import com.RK8.V2.DTO.ParsedUploads;
+import com.RK8.V2.DTO.PurchaseInvoiceDTO;
+import com.RK8.V2.Parser.Gstr2BFileParser;
+import com.RK8.V2.Parser.InvoiceNormalizer;
+import com.RK8.V2.Parser.PurchaseExcelParser;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Parses the purchase register and the GSTR-2B upload side by side on a dedicated,
+// bounded pool so request latency is max(parse A, parse B) instead of the sum.
+// 2B rows go straight from the parser into a MatchContext, so the match indexes are built
+// during the parse rather than in a second walk over a parsed list. Files seen before are
+// reloaded from their binary snapshot (InvoiceSnapshotStore) instead of being parsed again.
+@Service
+public class UploadParsingService implements DisposableBean {
+    private static final int QUEUE_CAPACITY = 64;
+
+    private final PurchaseExcelParser purchaseParser;
+    private final Gstr2BFileParser gstr2bParser;
+    private final InvoiceNormalizer invoiceNormalizer;
+    private final InvoiceSnapshotStore snapshotStore;
+    private final ExecutorService executor;
+
+    public UploadParsingService(PurchaseExcelParser purchaseParser, Gstr2BFileParser gstr2bParser,
+                                InvoiceNormalizer invoiceNormalizer, InvoiceSnapshotStore snapshotStore) {
+        this.purchaseParser = purchaseParser;
+        this.gstr2bParser = gstr2bParser;
+        this.invoiceNormalizer = invoiceNormalizer;
+        this.snapshotStore = snapshotStore;
+
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                r -> {
+                    Thread t = new Thread(r, "upload-parser-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                // When saturated, parse on the request thread rather than rejecting the upload
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    public ParsedUploads parse(MultipartFile purchaseFile, MultipartFile gstr2bFile) throws Exception {
+        return parse(purchaseFile.getResource(), gstr2bFile.getResource());
+    }
+
+    // Same, for uploads already spooled elsewhere (e.g. a queued job's temp files)
+    @SuppressWarnings("unchecked")
+    public ParsedUploads parse(Resource purchaseFile, Resource gstr2bFile) throws Exception {
+        CompletionService<Object> completion = new ExecutorCompletionService<>(executor);
+        Future<Object> purchaseTask = completion.submit(() -> parsePurchases(purchaseFile));
+        Future<Object> gstr2bTask = completion.submit(() -> parseGstr2b(gstr2bFile));
+
+        try {
+            // Wait in completion order so a failure on either side is seen immediately
+            for (int i = 0; i < 2; i++) {
+                Future<Object> done = completion.take();
+                try {
+                    done.get();
+                } catch (ExecutionException e) {
+                    throw unwrap(e);
+                }
+            }
+            MatchContext gstr2bIndex = (MatchContext) gstr2bTask.get();
+            return new ParsedUploads(
+                    (List<PurchaseInvoiceDTO>) purchaseTask.get(),
+                    gstr2bIndex.records(),
+                    gstr2bIndex);
+        } finally {
+            // No-op for finished tasks; interrupts the other parse if one side failed
+            purchaseTask.cancel(true);
+            gstr2bTask.cancel(true);
+        }
+    }
+
+    private List<PurchaseInvoiceDTO> parsePurchases(Resource file) throws Exception {
+        String key = snapshotStore.isEnabled() ? snapshotStore.key(file) : null;
+        if (key != null) {
+            List<PurchaseInvoiceDTO> snapshot = snapshotStore.loadPurchases(key);
+            if (snapshot != null) return snapshot;
+        }
+
+        List<PurchaseInvoiceDTO> purchases;
+        if (file.isFile()) {
+            // Large .xlsx files are then read in place rather than spooled
+            purchases = purchaseParser.parse(file.getFile());
+        } else {
+            try (InputStream is = file.getInputStream()) {
+                purchases = purchaseParser.parse(is, file.contentLength());
+            }
+        }
+        if (key != null) snapshotStore.savePurchases(key, purchases);
+        return purchases;
+    }
+
+    private MatchContext parseGstr2b(Resource file) throws Exception {
+        String key = snapshotStore.isEnabled() ? snapshotStore.key(file) : null;
+        if (key != null) {
+            MatchContext index = new MatchContext(invoiceNormalizer);
+            if (snapshotStore.loadGstr2b(key, index::add)) return index;
+        }
+
+        // Never the index a failed snapshot load may have started filling
+        MatchContext index = new MatchContext(invoiceNormalizer);
+        try (InputStream is = file.getInputStream()) {
+            gstr2bParser.parse(is, index::add);
+        }
+        if (key != null) snapshotStore.saveGstr2b(key, index.records());
+        return index;
+    }
+
+    private Exception unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof Exception) {
+            return (Exception) cause;
+        }
+        return new RuntimeException(cause);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
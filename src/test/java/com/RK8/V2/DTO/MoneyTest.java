@@ -0,0 +1,52 @@
+package com.RK8.V2.DTO;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MoneyTest {
+
+    @Test
+    void parsesTextStraightToPaiseRoundingHalfUp() {
+        assertEquals(Money.ofPaise(123450), Money.parse("1234.5"));
+        assertEquals(Money.ofPaise(-1200), Money.parse(" -12 "));
+        assertEquals(Money.ofPaise(26), Money.parse("+0.255"));
+        assertEquals(Money.ofPaise(25), Money.parse("0.254"));
+        // Not plain decimal text: through BigDecimal, or ZERO when unparsable
+        assertEquals(Money.ofRupees(1000), Money.parse("1E3"));
+        assertEquals(Money.ZERO, Money.parse("12,50"));
+        assertEquals(Money.ZERO, Money.parse(""));
+        assertEquals(Money.ZERO, Money.parse(null));
+    }
+
+    // Cell values arrive as doubles; they must land on the same paise as their decimal text
+    @Test
+    void doubleRupeesMatchTheirDecimalText() {
+        assertEquals(Money.parse("0.30"), Money.ofRupees(0.1 + 0.2));
+        assertEquals(Money.parse("19999.99"), Money.ofRupees(19999.99));
+        assertEquals(Money.parse("20.00"), Money.ofRupees(19.999));
+        assertEquals(Money.ZERO, Money.ofRupees(Double.NaN));
+    }
+
+    @Test
+    void arithmeticStaysInPaise() {
+        Money a = Money.parse("100.10");
+        Money b = Money.parse("99.95");
+
+        assertEquals(Money.ofPaise(20005), a.plus(b));
+        assertEquals(Money.ofPaise(-15), b.minus(a));
+        assertEquals(Money.ofPaise(15), b.minus(a).abs());
+        assertEquals(a, a.max(b));
+        assertEquals(15L, a.distance(b));
+        assertEquals(Money.ofPaise(20005), Money.sum(a, null, b));
+    }
+
+    @Test
+    void rendersTwoDecimalRupees() {
+        assertEquals("1234.50", Money.parse("1234.5").toString());
+        assertEquals(new BigDecimal("-0.05"), Money.ofPaise(-5).toBigDecimal());
+        assertEquals(0.3, Money.ofPaise(30).doubleValue());
+    }
+}
@@ -0,0 +1,54 @@
+package com.RK8.V2.Parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class InvoiceNormalizerTest {
+    private final InvoiceNormalizer normalizer = new InvoiceNormalizer(InvoiceNormalizer.DEFAULT_STRIP_PATTERNS);
+
+    @Test
+    void stripsPatternsAnywhereAndFoldsLookalikes() {
+        assertEquals("1NV-123", normalizer.normalizeInvoice("FY25-26/inv-123/24-25"));
+        assertEquals("10123", normalizer.normalizeInvoice(" io 1 23 "));
+        assertEquals("", normalizer.normalizeInvoice(null));
+    }
+
+    // Whitespace is dropped, but it still breaks a pattern that spans it
+    @Test
+    void whitespaceBreaksAPattern() {
+        assertEquals("FY25-26/7", normalizer.normalizeInvoice("FY25 -26/7"));
+    }
+
+    @Test
+    void baseInvoiceStripsOneLeadingAndAnyTrailingPatterns() {
+        assertEquals("123", normalizer.baseInvoice("TIA/T/123/24-25/25-26"));
+        assertEquals("123", normalizer.baseInvoice("123"));
+        assertEquals("TIA/T/123", normalizer.baseInvoice("TIA/T/TIA/T/123"));
+    }
+
+    @Test
+    void gstinKeepsUpperCaseAlphanumericsOnly() {
+        assertEquals("27AAAAA0000A1Z5", normalizer.normalizeGstin(" 27aaaaa-0000a1z5 "));
+        assertEquals("", normalizer.normalizeGstin(null));
+    }
+
+    @Test
+    void configuredPatternsReplaceTheDefaults() {
+        InvoiceNormalizer custom = new InvoiceNormalizer("ABC/, /XY");
+
+        assertEquals("12", custom.normalizeInvoice("abc/12/xy"));
+        assertEquals("FY25-26/12", custom.normalizeInvoice("FY25-26/12"));
+    }
+
+    // Snapshot keys depend on this: equal settings must agree, different patterns must not
+    @Test
+    void fingerprintFollowsThePatterns() {
+        assertEquals(normalizer.fingerprint(), new InvoiceNormalizer("").fingerprint());
+        assertEquals(normalizer.fingerprint(), new InvoiceNormalizer(String.join(",", InvoiceNormalizer.DEFAULT_STRIP_PATTERNS)).fingerprint());
+        assertNotEquals(normalizer.fingerprint(), new InvoiceNormalizer(List.of("FY25-26/")).fingerprint());
+    }
+}
@@ -0,0 +1,128 @@
+package com.RK8.V2.Parser;
+
+import com.RK8.V2.DTO.Gstr2BDTO;
+import com.RK8.V2.DTO.Money;
+import com.RK8.V2.DTO.PurchaseInvoiceDTO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InvoiceSnapshotCodecTest {
+    // Header is 5 ints; every record starts with gstin, invoice and date
+    private static final int FIRST_RECORD = 5 * Integer.BYTES;
+    private static final int INVOICE_FIELD = Integer.BYTES;
+    private static final int DATE_FIELD = 2 * Integer.BYTES;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void purchasesRoundTrip() throws IOException {
+        List<PurchaseInvoiceDTO> purchases = List.of(
+                purchase("27AAAAA0000A1Z5", "1NV-1", LocalDate.of(2025, 4, 1), "Steel"),
+                purchase("27AAAAA0000A1Z5", "1NV-2", null, null),
+                purchase("29BBBBB0000B1Z5", "", LocalDate.of(1999, 12, 31), "Steel"));
+        Path file = dir.resolve("p.snap");
+
+        InvoiceSnapshotCodec.writePurchases(file, purchases);
+        List<PurchaseInvoiceDTO> back = InvoiceSnapshotCodec.readPurchases(file);
+
+        assertEquals(purchases, back);
+        // Repeated strings come back as one instance
+        assertSame(back.get(0).getSupplierGstin(), back.get(1).getSupplierGstin());
+    }
+
+    @Test
+    void gstr2bRoundTripsInFileOrder() throws IOException {
+        Gstr2BDTO noTaxable = gstr2b("27AAAAA0000A1Z5", "1NV-2", LocalDate.of(2025, 4, 2));
+        noTaxable.setTaxableValue(null);
+        noTaxable.setLegalName(null);
+        List<Gstr2BDTO> records = List.of(gstr2b("27AAAAA0000A1Z5", "1NV-1", LocalDate.of(2025, 4, 1)), noTaxable);
+        Path file = dir.resolve("g.snap");
+
+        InvoiceSnapshotCodec.writeGstr2b(file, records);
+        List<Gstr2BDTO> back = new ArrayList<>();
+        InvoiceSnapshotCodec.readGstr2b(file, back::add);
+
+        assertEquals(records, back);
+    }
+
+    @Test
+    void outOfRangeDictionaryIdFailsBeforeAnyRecord() throws IOException {
+        Path file = dir.resolve("g.snap");
+        InvoiceSnapshotCodec.writeGstr2b(file, List.of(
+                gstr2b("27AAAAA0000A1Z5", "1NV-1", LocalDate.of(2025, 4, 1)),
+                gstr2b("27AAAAA0000A1Z5", "1NV-2", LocalDate.of(2025, 4, 2))));
+        int secondRecord = FIRST_RECORD + (4 * Integer.BYTES + 5 * Long.BYTES);
+        patchInt(file, secondRecord + INVOICE_FIELD, 1000);
+
+        List<Gstr2BDTO> seen = new ArrayList<>();
+        assertThrows(IOException.class, () -> InvoiceSnapshotCodec.readGstr2b(file, seen::add));
+        assertTrue(seen.isEmpty());
+    }
+
+    @Test
+    void outOfRangeDateIsAnIOException() throws IOException {
+        Path file = dir.resolve("p.snap");
+        InvoiceSnapshotCodec.writePurchases(file, List.of(
+                purchase("27AAAAA0000A1Z5", "1NV-1", LocalDate.of(2025, 4, 1), "Steel")));
+        patchInt(file, FIRST_RECORD + DATE_FIELD, Integer.MAX_VALUE);
+
+        assertThrows(IOException.class, () -> InvoiceSnapshotCodec.readPurchases(file));
+    }
+
+    @Test
+    void otherKindIsRejected() throws IOException {
+        Path file = dir.resolve("p.snap");
+        InvoiceSnapshotCodec.writePurchases(file, List.of());
+
+        assertEquals(List.of(), InvoiceSnapshotCodec.readPurchases(file));
+        assertThrows(IOException.class, () -> InvoiceSnapshotCodec.readGstr2b(file, g -> { }));
+    }
+
+    private static void patchInt(Path file, int offset, int value) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ch.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, value), offset);
+        }
+    }
+
+    private static PurchaseInvoiceDTO purchase(String gstin, String invoiceNo, LocalDate date, String particulars) {
+        PurchaseInvoiceDTO p = new PurchaseInvoiceDTO();
+        p.setSupplierGstin(gstin);
+        p.setInvoiceNo(invoiceNo);
+        p.setInvoiceDate(date);
+        p.setParticulars(particulars);
+        p.setIgst(Money.parse("180.00"));
+        p.setCgst(Money.ZERO);
+        p.setSgst(Money.ZERO);
+        p.setGrossTotal(Money.parse("1180.00"));
+        return p;
+    }
+
+    private static Gstr2BDTO gstr2b(String gstin, String invoiceNo, LocalDate date) {
+        Gstr2BDTO g = new Gstr2BDTO();
+        g.setSupplierGstin(gstin);
+        g.setInvoiceNo(invoiceNo);
+        g.setInvoiceDate(date);
+        g.setLegalName("Acme Steel");
+        g.setTaxableValue(Money.parse("1000.00"));
+        g.setInvoiceValue(Money.parse("1180.00"));
+        g.setIgst(Money.ZERO);
+        g.setCgst(Money.parse("90.00"));
+        g.setSgst(Money.parse("90.00"));
+        return g;
+    }
+}
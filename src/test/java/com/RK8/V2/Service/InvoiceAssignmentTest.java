@@ -0,0 +1,81 @@
+package com.RK8.V2.Service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class InvoiceAssignmentTest {
+    private static final int A = 0;
+    private static final int B = 1;
+    private static final int X = 0;
+    private static final int Y = 1;
+
+    // A has an exact match to X; B's only candidate is X at the amount tier. Re-pairing A-Y and
+    // B-X would match both purchases, but must not cost A its exact match.
+    @Test
+    void strongerTierIsNeverTradedForMoreMatches() {
+        List<InvoiceAssignment.Pair> pairs = List.of(
+                new InvoiceAssignment.Pair(A, X, 0, 0),
+                new InvoiceAssignment.Pair(A, Y, 5, 0),
+                new InvoiceAssignment.Pair(B, X, 5, 0));
+
+        int[] assigned = unassigned(2);
+        int[] assignedTier = new int[2];
+        BitSet taken = new BitSet();
+        InvoiceAssignment.optimal(pairs, assigned, assignedTier, taken, 64);
+
+        assertArrayEquals(new int[]{X, -1}, assigned);
+        assertEquals(0, assignedTier[A]);
+        assertEquals(1, taken.cardinality());
+
+        int[] greedy = unassigned(2);
+        InvoiceAssignment.greedy(pairs, greedy, new int[2], new BitSet());
+        assertArrayEquals(greedy, assigned);
+    }
+
+    // Within one tier the solver still finds the pairing greedy misses
+    @Test
+    void sameTierMatchesAsManyAsPossible() {
+        List<InvoiceAssignment.Pair> pairs = List.of(
+                new InvoiceAssignment.Pair(A, X, 1, 100),
+                new InvoiceAssignment.Pair(A, Y, 1, 200),
+                new InvoiceAssignment.Pair(B, X, 1, 200));
+
+        int[] greedy = unassigned(2);
+        InvoiceAssignment.greedy(pairs, greedy, new int[2], new BitSet());
+        assertArrayEquals(new int[]{X, -1}, greedy);
+
+        int[] assigned = unassigned(2);
+        int[] assignedTier = new int[2];
+        InvoiceAssignment.optimal(pairs, assigned, assignedTier, new BitSet(), 64);
+        assertArrayEquals(new int[]{Y, X}, assigned);
+        assertArrayEquals(new int[]{1, 1}, assignedTier);
+    }
+
+    // Records already claimed by an earlier pass stay out of reach
+    @Test
+    void skipsTakenRecords() {
+        List<InvoiceAssignment.Pair> pairs = List.of(
+                new InvoiceAssignment.Pair(A, X, 0, 0),
+                new InvoiceAssignment.Pair(A, Y, 2, 0));
+        BitSet taken = new BitSet();
+        taken.set(X);
+
+        int[] assigned = unassigned(1);
+        int[] assignedTier = new int[1];
+        InvoiceAssignment.optimal(pairs, assigned, assignedTier, taken, 64);
+        assertArrayEquals(new int[]{Y}, assigned);
+        assertEquals(2, assignedTier[A]);
+    }
+
+    private static int[] unassigned(int n) {
+        int[] assigned = new int[n];
+        Arrays.fill(assigned, -1);
+        return assigned;
+    }
+}
@@ -0,0 +1,76 @@
+package com.RK8.V2.Service;
+
+import com.RK8.V2.DTO.MatchFlag;
+import com.RK8.V2.DTO.Money;
+import com.RK8.V2.DTO.ReconciliationResult;
+import com.RK8.V2.DTO.ReconciliationStatus;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ResultFileTest {
+    private static final List<ReconciliationResult> RESULTS = List.of(
+            new ReconciliationResult("27AAAAA0000A1Z5", "1NV-1", ReconciliationStatus.MATCHED,
+                    Money.parse("180"), Money.parse("180"), Money.ZERO, "Matched", YearMonth.of(2025, 4),
+                    MatchFlag.INVOICE_NO_DIFFERS.bit()),
+            new ReconciliationResult("27AAAAA0000A1Z5", "1NV-2", ReconciliationStatus.MISMATCH,
+                    Money.parse("180"), Money.parse("90.50"), Money.parse("89.50"), "Tax amount differs by 89.50",
+                    YearMonth.of(2025, 4)),
+            new ReconciliationResult("29BBBBB0000B1Z5", "9", ReconciliationStatus.MISSING_IN_2B,
+                    Money.parse("12.34"), Money.ZERO, Money.parse("12.34"), null, null),
+            new ReconciliationResult(null, "1NV-3", ReconciliationStatus.MISMATCH,
+                    Money.parse("-5"), Money.parse("5"), Money.ZERO, "Tax amount differs by 10.00",
+                    YearMonth.of(1999, 12)));
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void everyRowReadsBackAsWritten() throws IOException {
+        ResultFile file = write(RESULTS);
+
+        assertEquals(RESULTS.size(), file.size());
+        assertEquals(RESULTS, file.asList());
+        assertEquals(RESULTS.get(3), file.get(3));
+    }
+
+    @Test
+    void statusPagesKeepResultOrder() throws IOException {
+        ResultFile file = write(RESULTS);
+        String mismatch = ReconciliationStatus.MISMATCH.name();
+
+        assertEquals(Map.of("MATCHED", 1, "MISMATCH", 2, "MISSING_IN_2B", 1), file.statusCounts());
+        assertEquals(2, file.count(mismatch));
+        assertEquals(0, file.count(ReconciliationStatus.MISSING_IN_PURCHASE.name()));
+        assertEquals(RESULTS.stream().filter(r -> r.getStatus() == ReconciliationStatus.MISMATCH)
+                .collect(Collectors.toList()), file.page(mismatch, 0, 10));
+        assertEquals(List.of(RESULTS.get(3)), file.page(mismatch, 1, 10));
+        assertEquals(RESULTS.subList(1, 3), file.page(null, 1, 2));
+        assertEquals(List.of(), file.page(null, 10, 2));
+    }
+
+    @Test
+    void emptyRunAndOutOfRangeRows() throws IOException {
+        ResultFile file = write(List.of());
+
+        assertEquals(0, file.size());
+        assertEquals(List.of(), file.page(null, 0, 10));
+        assertThrows(IndexOutOfBoundsException.class, () -> file.get(0));
+    }
+
+    private ResultFile write(List<ReconciliationResult> results) throws IOException {
+        Path records = dir.resolve("run.rec");
+        Path strings = dir.resolve("run.str");
+        ResultFile.write(records, strings, results);
+        return ResultFile.open(records, strings);
+    }
+}